@@ -0,0 +1,54 @@
+package com.example.application.profiling.benchmark;
+
+import com.example.application.profiling.SizeOfCalculator;
+import org.ehcache.sizeof.SizeOf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Objects visited per second with and without the SizeOfCalculator listener (the "objects" counter); the
+ * difference of the inverse rates is the listener overhead per object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListenerOverheadBenchmark {
+
+    private static final String[] PREFIXES = {"com.vaadin.flow.component", "com.vaadin.flow.server.VaadinSession"};
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class VisitedObjects {
+        public long objects;
+    }
+
+    @Param({"100000"})
+    int components;
+
+    private Object root;
+    private long objectsPerWalk;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        root = SyntheticGraph.create(100, 2, components);
+        long[] count = new long[1];
+        SizeOf.newInstance(true, true).deepSizeOf((object, size) -> count[0]++, root);
+        objectsPerWalk = count[0];
+    }
+
+    @Benchmark
+    public long withoutListener(VisitedObjects visited) {
+        visited.objects += objectsPerWalk;
+        return SizeOf.newInstance(true, true).deepSizeOf(root);
+    }
+
+    @Benchmark
+    public SizeOfCalculator.DeepSize withListener(VisitedObjects visited) {
+        visited.objects += objectsPerWalk;
+        return SizeOfCalculator.calculateSizesOf(root, SizeOfCalculator.StatisticsMode.AGGREGATE, PREFIXES);
+    }
+}
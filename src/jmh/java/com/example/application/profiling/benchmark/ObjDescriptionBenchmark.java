@@ -0,0 +1,28 @@
+package com.example.application.profiling.benchmark;
+
+import com.example.application.profiling.ObjDescription;
+import com.vaadin.flow.component.html.Div;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjDescriptionBenchmark {
+
+    private final Object component = new Div();
+
+    @Benchmark
+    public String getDescription() {
+        return ObjDescription.getDescription(component);
+    }
+
+    @Benchmark
+    public String getDescriptionOfNull() {
+        return ObjDescription.getDescription(null);
+    }
+}
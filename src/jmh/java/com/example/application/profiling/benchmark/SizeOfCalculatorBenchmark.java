@@ -0,0 +1,59 @@
+package com.example.application.profiling.benchmark;
+
+import com.example.application.profiling.SizeOfCalculator;
+import org.ehcache.sizeof.SizeOf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for one full measurement of a synthetic graph, bare ehcache walk vs. SizeOfCalculator in both statistics
+ * modes. Run with -prof gc (the default of the benchmark profile) to see the allocation rate of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SizeOfCalculatorBenchmark {
+
+    private static final String[] PREFIXES = {"com.vaadin.flow.component", "com.vaadin.flow.server.VaadinSession"};
+    private static final String[] PREFIXES_AND_ARRAYS = {"com.vaadin.flow.component", "com.vaadin.flow.server.VaadinSession", "["};
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int components;
+
+    @Param({"100"})
+    int sessions;
+
+    @Param({"2"})
+    int uisPerSession;
+
+    private Object root;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        root = SyntheticGraph.create(sessions, uisPerSession, components);
+    }
+
+    @Benchmark
+    public long bareDeepSizeOf() {
+        return SizeOf.newInstance(true, true).deepSizeOf(root);
+    }
+
+    @Benchmark
+    public SizeOfCalculator.DeepSize instanceStatistics() {
+        return SizeOfCalculator.calculateSizesOf(root, SizeOfCalculator.StatisticsMode.INSTANCES, PREFIXES);
+    }
+
+    @Benchmark
+    public SizeOfCalculator.DeepSize largestArrayStatistics() {
+        return SizeOfCalculator.calculateSizesOf(root, SizeOfCalculator.StatisticsMode.LARGEST_ARRAYS, PREFIXES_AND_ARRAYS);
+    }
+
+    @Benchmark
+    public SizeOfCalculator.DeepSize aggregateStatistics() {
+        return SizeOfCalculator.calculateSizesOf(root, SizeOfCalculator.StatisticsMode.AGGREGATE, PREFIXES);
+    }
+}
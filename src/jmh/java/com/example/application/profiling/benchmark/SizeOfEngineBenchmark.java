@@ -0,0 +1,52 @@
+package com.example.application.profiling.benchmark;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.impl.AgentSizeOf;
+import org.ehcache.sizeof.impl.PassThroughFilter;
+import org.ehcache.sizeof.impl.ReflectionSizeOf;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the SizeOf implementations SizeOfCalculator can use. An engine that is not available on the running
+ * JVM (e.g. no agent can be attached) fails its setup and is reported as an error by JMH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SizeOfEngineBenchmark {
+
+    @Param({"AGENT", "UNSAFE", "REFLECTION"})
+    String engine;
+
+    @Param({"100000"})
+    int components;
+
+    private Object root;
+    private SizeOf sizeOf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        root = SyntheticGraph.create(100, 2, components);
+        switch (engine) {
+            case "AGENT":
+                sizeOf = new AgentSizeOf(new PassThroughFilter(), true, true);
+                break;
+            case "UNSAFE":
+                sizeOf = new UnsafeSizeOf(new PassThroughFilter(), true, true);
+                break;
+            default:
+                sizeOf = new ReflectionSizeOf(new PassThroughFilter(), true, true);
+        }
+    }
+
+    @Benchmark
+    public long deepSizeOf() {
+        return sizeOf.deepSizeOf(root);
+    }
+}
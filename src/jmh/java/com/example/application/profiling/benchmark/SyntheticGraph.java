@@ -0,0 +1,70 @@
+package com.example.application.profiling.benchmark;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.server.VaadinSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Builds Vaadin-like object graphs of configurable size: per session a list of UIs, each UI holding an equal share
+ * of the components in layouts of up to 50 children. The UIs are attached to their session as in a running
+ * application, so the walks and the Vaadin statistics see the real session, UI and component topology.
+ */
+final class SyntheticGraph {
+
+    private SyntheticGraph() {
+    }
+
+    /**
+     * A session without a service; it gets the lock the service would otherwise provide.
+     */
+    private static final class SyntheticSession extends VaadinSession {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        SyntheticSession() {
+            super(null);
+        }
+
+        @Override
+        public Lock getLockInstance() {
+            return lock;
+        }
+    }
+
+    static Object create(int sessions, int uisPerSession, int components) {
+        int componentsPerUI = Math.max(1, components / (sessions * uisPerSession));
+        List<VaadinSession> root = new ArrayList<>(sessions);
+        int uiId = 0;
+        for (int s = 0; s < sessions; s++) {
+            SyntheticSession session = new SyntheticSession();
+            // not session.lock()/unlock(): unlocking runs the pending access tasks of the (missing) service
+            session.lock.lock();
+            try {
+                for (int u = 0; u < uisPerSession; u++) {
+                    UI ui = new UI();
+                    ui.doInit(null, uiId++);
+                    ui.getInternals().setSession(session);
+                    session.addUI(ui);
+                    Div layout = null;
+                    for (int c = 0; c < componentsPerUI; c++) {
+                        if (c % 50 == 0) {
+                            layout = new Div();
+                            ui.add(layout);
+                        }
+                        else {
+                            layout.add(new Div());
+                        }
+                    }
+                }
+            } finally {
+                session.lock.unlock();
+            }
+            root.add(session);
+        }
+        return root;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.application;
+
+import com.example.application.profiling.AllocationRecorder;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.server.VaadinSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.*;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the bytes allocated per VaadinSession with an AllocationRecorder, if memory.allocation.enabled is set.
+ * A request handler that runs before the ones of Flow tells which session a request belongs to; as a servlet
+ * filter, this bean reads the allocation counter of the request thread before and after the whole request.
+ */
+@Component
+public class AllocationProfiling implements VaadinServiceInitListener, Filter {
+
+    private static final String SESSION_ATTRIBUTE = AllocationProfiling.class.getName() + ".session";
+
+    Logger logger = Logger.getLogger(AllocationProfiling.class.getName());
+
+    private final boolean enabled;
+
+    public AllocationProfiling(@Value("${memory.allocation.enabled:false}") boolean enabled) {
+        this.enabled = enabled && AllocationRecorder.isSupported();
+        if (enabled && !this.enabled) {
+            logger.log(Level.WARNING, "This JVM does not count allocated bytes per thread, not recording allocations.");
+        }
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        if (!enabled) {
+            return;
+        }
+        VaadinService service = event.getSource();
+        AllocationRecorder recorder = AllocationRecorder.get(service);
+        // handlers added here run before the built-in ones
+        event.addRequestHandler((session, request, response) -> {
+            request.setAttribute(SESSION_ATTRIBUTE, session);
+            return false;
+        });
+        service.addSessionDestroyListener(sessionDestroyEvent -> recorder.sessionDestroyed(sessionDestroyEvent.getSession()));
+        logger.log(Level.INFO, "Recording allocated bytes per session.");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = AllocationRecorder.getCurrentThreadAllocatedBytes();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object session = request.getAttribute(SESSION_ATTRIBUTE);
+            if (session instanceof VaadinSession) {
+                VaadinSession vaadinSession = (VaadinSession) session;
+                AllocationRecorder.get(vaadinSession.getService()).record(vaadinSession, AllocationRecorder.getCurrentThreadAllocatedBytes() - start);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.application;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
 
 import org.springframework.boot.SpringApplication;
@@ -16,11 +17,14 @@ import com.vaadin.flow.component.dependency.NpmPackage;
  * Use the @PWA annotation make the application installable on phones, tablets
  * and some desktop browsers.
  *
+ * Server push delivers the results of measurements running in the background.
+ *
  */
 @SpringBootApplication
 @Theme(value = "memory")
 @PWA(name = "Memory", shortName = "Memory", offlineResources = {"images/logo.png"})
 @NpmPackage(value = "line-awesome", version = "1.3.0")
+@Push
 public class Application extends SpringBootServletInitializer implements AppShellConfigurator {
 
     public static void main(String[] args) {
@@ -1,8 +1,12 @@
 package com.example.application;
 
+import com.example.application.profiling.LiveRegistry;
 import com.example.application.profiling.ObjDescription;
+import com.example.application.profiling.SessionFootprintTracker;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.server.ServiceInitEvent;
 import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.server.VaadinSession;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -14,11 +18,39 @@ public class ApplicationServiceInitListener
 
     @Override
     public void serviceInit(ServiceInitEvent event) {
+        SessionFootprintTracker footprintTracker = SessionFootprintTracker.get(event.getSource());
+        LiveRegistry liveRegistry = LiveRegistry.get(event.getSource());
+
+        // any request may add components, attributes or orphans; returning false leaves it to the other handlers
+        event.addRequestHandler( (session, request, response) -> {
+            footprintTracker.markDirty(session);
+            return false;
+        });
+
         event.getSource().addSessionInitListener( sessionInitEvent -> {
             logger.log(Level.WARNING, "Session "+ObjDescription.getDescription(sessionInitEvent.getSession())+" initialized.");
+            footprintTracker.register(sessionInitEvent.getSession());
+            liveRegistry.sessionCreated(sessionInitEvent.getSession());
         });
         event.getSource().addSessionDestroyListener( sessionDestroyEvent -> {
             logger.log(Level.WARNING, "Session "+ ObjDescription.getDescription(sessionDestroyEvent.getSession())+" destroyed.");
+            footprintTracker.unregister(sessionDestroyEvent.getSession());
+            liveRegistry.sessionDestroyed(sessionDestroyEvent.getSession());
+        });
+        event.getSource().addUIInitListener( uiInitEvent -> {
+            UI ui = uiInitEvent.getUI();
+            VaadinSession session = ui.getSession();
+            footprintTracker.registerUI(ui);
+            liveRegistry.uiAttached(ui);
+            // navigation swaps views (and so most of the components), detaching drops a whole UI
+            ui.addAfterNavigationListener( afterNavigationEvent -> {
+                footprintTracker.markDirty(session);
+                liveRegistry.componentsChanged(ui);
+            });
+            ui.addDetachListener( detachEvent -> {
+                footprintTracker.unregisterUI(session, ui);
+                liveRegistry.uiDetached(ui);
+            });
         });
     }
 
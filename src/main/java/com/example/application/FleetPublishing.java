@@ -0,0 +1,90 @@
+package com.example.application;
+
+import com.example.application.profiling.FileFleetTransport;
+import com.example.application.profiling.FleetAggregator;
+import com.example.application.profiling.FleetTransport;
+import com.example.application.profiling.GcAwareScheduler;
+import com.example.application.profiling.NodeSummary;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes a NodeSummary of every sample of the FootprintSampler, configured by the memory.fleet.* properties, so
+ * the nodes of a cluster can be compared in one fleet view. The transport is a FileFleetTransport unless the
+ * application context defines a FleetTransport bean. Like FootprintSampling, Vaadin picks it up as a service init
+ * listener, as the heap baseline of a summary comes from the GcAwareScheduler of the service.
+ */
+@Component
+public class FleetPublishing implements VaadinServiceInitListener {
+
+    Logger logger = Logger.getLogger(FleetPublishing.class.getName());
+
+    private final boolean enabled;
+    private final String nodeId;
+    private final int topN;
+    private final FootprintSampling footprintSampling;
+    private final FleetTransport transport;
+
+    public FleetPublishing(FootprintSampling footprintSampling,
+                           ObjectProvider<FleetTransport> fleetTransport,
+                           @Value("${memory.fleet.enabled:false}") boolean enabled,
+                           @Value("${memory.fleet.node-id:}") String nodeId,
+                           @Value("${memory.fleet.directory:${java.io.tmpdir}/memory-fleet}") String directory,
+                           @Value("${memory.fleet.max-age-seconds:300}") long maxAgeSeconds,
+                           @Value("${memory.fleet.top-n:20}") int topN) {
+        this.enabled = enabled;
+        this.nodeId = (nodeId.trim().isEmpty() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId.trim()); // pid@host
+        this.topN = topN;
+        this.footprintSampling = footprintSampling;
+        this.transport = (enabled ? fleetTransport.getIfAvailable(() -> {
+            try {
+                return new FileFleetTransport(Paths.get(directory), maxAgeSeconds * 1000);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }) : null);
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        if (!enabled) {
+            return;
+        }
+        VaadinService service = event.getSource();
+        footprintSampling.addSampleListener((sample, report) -> {
+            try {
+                // looked up per sample, GcAwareScheduling may install its scheduler after this listener
+                transport.publish(NodeSummary.of(nodeId, sample, report, GcAwareScheduler.get(service), topN));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Publishing the footprint of node " + nodeId + " failed.", e);
+            }
+        });
+        logger.log(Level.INFO, "Publishing footprints as node " + nodeId + ".");
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the fleet as published by all nodes, empty if publishing is disabled.
+     */
+    public Optional<FleetAggregator> getFleet() throws IOException {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.of(FleetAggregator.aggregate(transport.collect(), topN));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.application;
+
+import com.example.application.profiling.FootprintHistory;
+import com.example.application.profiling.SessionFootprintTracker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes session and UI footprints through Micrometer (and so the Actuator Prometheus endpoint). Everything is
+ * recorded when the FootprintSampler takes a sample; a scrape only reads the cached values and never walks the heap.
+ * A sample holds the cached footprint of every session, most of them unchanged since the previous sample, so the
+ * per-session and per-UI distributions are published as quantile gauges of the latest sample rather than recorded
+ * into summaries, where every sample would count the same sessions again.
+ */
+@Component
+public class FootprintMetrics implements MeterBinder {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 1};
+
+    private volatile long sessions;
+    private volatile long orphanedComponents;
+    private volatile long totalBytes;
+
+    private volatile double[] uisPerSession = new double[QUANTILES.length];
+    private volatile double[] componentsPerUI = new double[QUANTILES.length];
+    private volatile double[] sessionBytes = new double[QUANTILES.length];
+    private volatile Timer measurementDuration;
+
+    public FootprintMetrics(FootprintSampling footprintSampling) {
+        footprintSampling.addSampleListener(this::record);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("memory.vaadin.sessions", this, m -> m.sessions)
+                .description("Number of tracked VaadinSessions")
+                .register(registry);
+        Gauge.builder("memory.vaadin.components.orphaned", this, m -> m.orphanedComponents)
+                .description("Components not attached to any UI")
+                .register(registry);
+        Gauge.builder("memory.vaadin.sessions.bytes", this, m -> m.totalBytes)
+                .description("Deep size of all tracked VaadinSessions")
+                .baseUnit("bytes")
+                .register(registry);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            final int quantile = i;
+            String tag = String.valueOf(QUANTILES[i]);
+            Gauge.builder("memory.vaadin.session.uis", this, m -> m.uisPerSession[quantile])
+                    .description("UIs per VaadinSession in the latest sample")
+                    .tag("quantile", tag)
+                    .register(registry);
+            Gauge.builder("memory.vaadin.ui.components", this, m -> m.componentsPerUI[quantile])
+                    .description("Components per UI in the latest sample")
+                    .tag("quantile", tag)
+                    .register(registry);
+            Gauge.builder("memory.vaadin.session.bytes", this, m -> m.sessionBytes[quantile])
+                    .description("Deep size per VaadinSession in the latest sample")
+                    .baseUnit("bytes")
+                    .tag("quantile", tag)
+                    .register(registry);
+        }
+        measurementDuration = Timer.builder("memory.footprint.measurement")
+                .description("Duration of a footprint sample")
+                .register(registry);
+    }
+
+    private void record(FootprintHistory.Sample sample, SessionFootprintTracker.FootprintReport report) {
+        long orphans = 0;
+        List<Double> uis = new ArrayList<>();
+        List<Double> components = new ArrayList<>();
+        List<Double> bytes = new ArrayList<>();
+        for (SessionFootprintTracker.SessionFootprint footprint : report.getSessionFootprints()) {
+            orphans += footprint.getNumberOfOrphanedComponents();
+            uis.add((double) footprint.getNumberOfUIs());
+            bytes.add((double) footprint.getDeepSize());
+            footprint.getUIComponentCounts().values().forEach(count -> components.add((double) count));
+        }
+        this.uisPerSession = quantiles(uis);
+        this.componentsPerUI = quantiles(components);
+        this.sessionBytes = quantiles(bytes);
+        this.sessions = report.getSessionFootprints().size();
+        this.orphanedComponents = orphans;
+        this.totalBytes = sample.getTotalBytes();
+        if (measurementDuration != null) {
+            measurementDuration.record(sample.getDurationNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return the QUANTILES of the values by nearest rank, zeros if there are none.
+     */
+    static double[] quantiles(List<Double> values) {
+        double[] retVal = new double[QUANTILES.length];
+        if (values.isEmpty()) {
+            return retVal;
+        }
+        values.sort(null);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            int rank = (int) Math.ceil(QUANTILES[i] * values.size());
+            retVal[i] = values.get(Math.max(0, rank - 1));
+        }
+        return retVal;
+    }
+}
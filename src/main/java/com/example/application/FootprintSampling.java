@@ -0,0 +1,116 @@
+package com.example.application;
+
+import com.example.application.profiling.ClassMatcher;
+import com.example.application.profiling.FootprintSampler;
+import com.example.application.profiling.SessionFootprintTracker;
+import com.example.application.profiling.SizeOfCalculator;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts a FootprintSampler for the VaadinService and stops it with the service; configured by the memory.sampler.*
+ * properties. Being a Spring bean, Vaadin picks it up as a service init listener on its own.
+ * With every sample it also estimates the deep size of the whole service from a random sample of the sessions
+ * (see SizeOfCalculator.calculateApproximateSizes), so views only print the latest estimate. The sampled sessions are
+ * walked in the common pool, whose CPU time the sampler's budget does not see; keep their number small.
+ */
+@Component
+public class FootprintSampling implements VaadinServiceInitListener {
+
+    Logger logger = Logger.getLogger(FootprintSampling.class.getName());
+
+    private final boolean enabled;
+    private final long intervalSeconds;
+    private final double cpuBudget;
+    private final int historySize;
+    private final int estimateSessions;
+    private final long maxFootprintAgeSeconds;
+
+    public interface ServiceEstimate {
+        long getTimestampMillis();
+        SizeOfCalculator.ApproximateDeepSize getApproximateDeepSize();
+    }
+
+    private final List<FootprintSampler.SampleListener> sampleListeners = new CopyOnWriteArrayList<>();
+    private volatile FootprintSampler sampler;
+    private volatile ServiceEstimate serviceEstimate;
+
+    public FootprintSampling(@Value("${memory.sampler.enabled:true}") boolean enabled,
+                             @Value("${memory.sampler.interval-seconds:60}") long intervalSeconds,
+                             @Value("${memory.sampler.cpu-budget:0.05}") double cpuBudget,
+                             @Value("${memory.sampler.history-size:120}") int historySize,
+                             @Value("${memory.sampler.estimate-sessions:20}") int estimateSessions,
+                             @Value("${memory.sampler.max-footprint-age-seconds:600}") long maxFootprintAgeSeconds) {
+        this.enabled = enabled;
+        this.intervalSeconds = intervalSeconds;
+        this.cpuBudget = cpuBudget;
+        this.historySize = historySize;
+        this.estimateSessions = estimateSessions;
+        this.maxFootprintAgeSeconds = maxFootprintAgeSeconds;
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        if (!enabled) {
+            return;
+        }
+        VaadinService service = event.getSource();
+        SessionFootprintTracker tracker = SessionFootprintTracker.get(service);
+        tracker.setMaxFootprintAgeMillis(maxFootprintAgeSeconds * 1000);
+        FootprintSampler footprintSampler = new FootprintSampler(tracker, intervalSeconds * 1000, cpuBudget, historySize);
+        sampleListeners.forEach(footprintSampler::addSampleListener);
+        if (estimateSessions > 0) {
+            footprintSampler.addSampleListener((sample, report) -> estimate(service, sample.getTimestampMillis()));
+        }
+        footprintSampler.start();
+        service.addServiceDestroyListener( serviceDestroyEvent -> footprintSampler.stop());
+        this.sampler = footprintSampler;
+        logger.log(Level.INFO, "Sampling session footprints every " + intervalSeconds + " s.");
+    }
+
+    public Optional<FootprintSampler> getSampler() {
+        return Optional.ofNullable(sampler);
+    }
+
+    /**
+     * @return the estimate made with the latest sample, if any.
+     */
+    public Optional<ServiceEstimate> getServiceEstimate() {
+        return Optional.ofNullable(serviceEstimate);
+    }
+
+    /**
+     * Adds the listener to the sampler, also if that is only started later on.
+     */
+    public void addSampleListener(FootprintSampler.SampleListener listener) {
+        sampleListeners.add(listener);
+        getSampler().ifPresent(s -> s.addSampleListener(listener));
+    }
+
+    private void estimate(VaadinService service, final long timestampMillis) {
+        final SizeOfCalculator.ApproximateDeepSize approximateDeepSize = SizeOfCalculator.calculateApproximateSizes(service,
+                SessionFootprintTracker.get(service).getSessions(), estimateSessions, ForkJoinPool.commonPool(),
+                ClassMatcher.ofPrefixes("com.example.application", "com.vaadin.flow.component"));
+        serviceEstimate = new ServiceEstimate() {
+            @Override
+            public long getTimestampMillis() {
+                return timestampMillis;
+            }
+
+            @Override
+            public SizeOfCalculator.ApproximateDeepSize getApproximateDeepSize() {
+                return approximateDeepSize;
+            }
+        };
+    }
+}
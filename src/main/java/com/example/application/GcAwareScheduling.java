@@ -0,0 +1,37 @@
+package com.example.application;
+
+import com.example.application.profiling.GcAwareScheduler;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Installs the GcAwareScheduler that on-demand measurements wait on, configured by the memory.measurement.*
+ * properties. Explicit GC is off unless memory.measurement.explicit-gc is set.
+ */
+@Component
+public class GcAwareScheduling implements VaadinServiceInitListener {
+
+    Logger logger = Logger.getLogger(GcAwareScheduling.class.getName());
+
+    private final long gcWaitSeconds;
+    private final boolean explicitGc;
+
+    public GcAwareScheduling(@Value("${memory.measurement.gc-wait-seconds:30}") long gcWaitSeconds,
+                             @Value("${memory.measurement.explicit-gc:false}") boolean explicitGc) {
+        this.gcWaitSeconds = gcWaitSeconds;
+        this.explicitGc = explicitGc;
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        GcAwareScheduler.install(event.getSource(), new GcAwareScheduler(gcWaitSeconds * 1000, explicitGc));
+        if (explicitGc) {
+            logger.log(Level.WARNING, "Measurements force a full GC with System.gc().");
+        }
+    }
+}
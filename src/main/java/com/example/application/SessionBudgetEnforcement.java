@@ -0,0 +1,48 @@
+package com.example.application;
+
+import com.example.application.profiling.SessionBudget;
+import com.example.application.profiling.SessionFootprintTracker;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks every sample of the FootprintSampler against the per-session budget of the memory.budget.* properties.
+ * A budget of 0 (the default) disables enforcement.
+ */
+@Component
+public class SessionBudgetEnforcement implements VaadinServiceInitListener {
+
+    Logger logger = Logger.getLogger(SessionBudgetEnforcement.class.getName());
+
+    private final FootprintSampling footprintSampling;
+    private final long sessionBytes;
+    private final SessionBudget.Policy policy;
+    private final List<String> evictedAttributes;
+
+    public SessionBudgetEnforcement(FootprintSampling footprintSampling,
+                                    @Value("${memory.budget.session-bytes:0}") long sessionBytes,
+                                    @Value("${memory.budget.policy:warn}") String policy,
+                                    @Value("${memory.budget.evicted-attributes:}") List<String> evictedAttributes) {
+        this.footprintSampling = footprintSampling;
+        this.sessionBytes = sessionBytes;
+        this.policy = SessionBudget.Policy.valueOf(policy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.evictedAttributes = evictedAttributes;
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        if (sessionBytes <= 0) {
+            return;
+        }
+        SessionFootprintTracker tracker = SessionFootprintTracker.get(event.getSource());
+        footprintSampling.addSampleListener(new SessionBudget(tracker, sessionBytes, policy, evictedAttributes));
+        logger.log(Level.INFO, "Enforcing a budget of " + sessionBytes + " bytes per session, policy " + policy + ".");
+    }
+}
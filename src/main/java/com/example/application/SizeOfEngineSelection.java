@@ -0,0 +1,23 @@
+package com.example.application;
+
+import com.example.application.profiling.SizeOfEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the SizeOf engine at startup (memory.sizeof.engine: auto, agent, unsafe or reflection), so that the probe
+ * does not run on the first request that measures something.
+ */
+@Component
+public class SizeOfEngineSelection {
+
+    private final SizeOfEngine engine;
+
+    public SizeOfEngineSelection(@Value("${memory.sizeof.engine:auto}") String engine) {
+        this.engine = SizeOfEngine.select(engine);
+    }
+
+    public SizeOfEngine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.example.application.profiling.ObjDescription.getDescription;
+
+/**
+ * Sums the bytes allocated while handling the requests of each VaadinSession, as counted by the HotSpot per-thread
+ * allocation counter, so the sessions driving GC pressure can be found next to the ones holding the most memory.
+ * Reading the counter costs well under a microsecond, so it can stay on in production. Allocations outside of a
+ * request of the session (push from background threads, other sessions' requests) are not attributed to it.
+ * The rate is exponentially weighted with a time constant of a minute, so it follows what a session allocates now:
+ * a session that allocated heavily an hour ago and is idle since has decayed to nothing.
+ */
+public class AllocationRecorder {
+
+    public interface Allocation {
+        String getSessionDescription();
+        long getAllocatedBytes();
+        double getBytesPerSecond(); // exponentially weighted, mostly over the last minute
+    }
+
+    private static final double TIME_CONSTANT_MILLIS = 60_000;
+
+    private static final class Entry {
+        private final String description;
+        private final LongAdder bytes = new LongAdder();
+        private double decayedBytes; // guarded by this
+        private long decayedAtMillis = System.currentTimeMillis(); // guarded by this
+
+        Entry(String description) {
+            this.description = description;
+        }
+
+        synchronized void add(long allocatedBytes, long now) {
+            decayedBytes = decay(now) + allocatedBytes;
+            decayedAtMillis = now;
+        }
+
+        /**
+         * The decayed sum over the time constant is the rate: a steady rate r adds up to r * time constant.
+         */
+        synchronized double getBytesPerSecond(long now) {
+            return decay(now) * 1000 / TIME_CONSTANT_MILLIS;
+        }
+
+        private double decay(long now) {
+            return decayedBytes * Math.exp(-Math.max(0, now - decayedAtMillis) / TIME_CONSTANT_MILLIS);
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final ConcurrentHashMap<WeakIdentityKey<VaadinSession>, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return the recorder of the given service, created on first use.
+     */
+    public static AllocationRecorder get(VaadinService service) {
+        return service.getContext().getAttribute(AllocationRecorder.class, AllocationRecorder::new);
+    }
+
+    /**
+     * @return whether the JVM counts allocated bytes per thread; if not, nothing is recorded.
+     */
+    public static boolean isSupported() {
+        return threadMXBean != null && threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, -1 if not supported.
+     */
+    public static long getCurrentThreadAllocatedBytes() {
+        return (isSupported() ? threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1);
+    }
+
+    public void record(VaadinSession session, long allocatedBytes) {
+        expungeCollected();
+        Entry entry = entries.get(new WeakIdentityKey<>(session, null));
+        if (entry == null) {
+            entry = entries.computeIfAbsent(new WeakIdentityKey<>(session, collected), k -> new Entry(getDescription(session)));
+        }
+        entry.bytes.add(allocatedBytes);
+        entry.add(allocatedBytes, System.currentTimeMillis());
+    }
+
+    public void sessionDestroyed(VaadinSession session) {
+        expungeCollected();
+        entries.remove(new WeakIdentityKey<>(session, null));
+    }
+
+    /**
+     * @return the allocations of the live sessions by session description, most bytes per second first.
+     */
+    public LinkedHashMap<String, Allocation> getAllocations() {
+        expungeCollected();
+        long now = System.currentTimeMillis();
+        List<Allocation> allocations = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            final long bytes = entry.bytes.sum();
+            final double bytesPerSecond = entry.getBytesPerSecond(now);
+            allocations.add(new Allocation() {
+                @Override
+                public String getSessionDescription() {
+                    return entry.description;
+                }
+
+                @Override
+                public long getAllocatedBytes() {
+                    return bytes;
+                }
+
+                @Override
+                public double getBytesPerSecond() {
+                    return bytesPerSecond;
+                }
+            });
+        }
+        allocations.sort(Comparator.comparingDouble(Allocation::getBytesPerSecond).reversed());
+        LinkedHashMap<String, Allocation> retVal = new LinkedHashMap<>();
+        for (Allocation allocation : allocations) {
+            retVal.put(allocation.getSessionDescription(), allocation);
+        }
+        return retVal;
+    }
+
+    private void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            entries.remove(reference);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return (bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null);
+    }
+}
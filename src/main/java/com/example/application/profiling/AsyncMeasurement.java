@@ -0,0 +1,175 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.server.VaadinService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs measurements of a VaadinService off the request threads, one at a time: starting a measurement of a kind
+ * (e.g. deep sizes, retained sizes) while one of the same kind is running joins the running one instead of crawling
+ * the heap twice; measurements of other kinds queue up behind it. Everyone who started or joined a run holds a
+ * Measurement of their own; cancelling it only lets go of that subscription, and the run itself is cancelled once
+ * the last subscriber has let go. The measuring thread is a low-priority daemon; parallel measurements fan out from
+ * it into their own pool.
+ */
+public class AsyncMeasurement {
+
+    private static final Logger logger = Logger.getLogger(AsyncMeasurement.class.getName());
+
+    private static final String DEEP_SIZE = "deep size";
+
+    /**
+     * One run of a measurement, shared by all of its subscribers.
+     */
+    private static final class Run<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final MeasurementProgress progress = new MeasurementProgress();
+        private int numSubscribers; // guarded by the AsyncMeasurement
+
+        boolean isJoinable() {
+            return !result.isDone() && !progress.isCancelled();
+        }
+    }
+
+    /**
+     * The subscription of one caller to a run.
+     */
+    public final class Measurement<T> {
+        private final Run<T> run;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private boolean cancelled; // guarded by the AsyncMeasurement
+
+        private Measurement(Run<T> run) {
+            this.run = run;
+            run.result.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                }
+                else {
+                    result.complete(value);
+                }
+            });
+        }
+
+        /**
+         * Completes on the measuring thread; exceptionally with a CancellationException if this subscription or the
+         * whole measurement was cancelled.
+         */
+        public CompletableFuture<T> getResult() {
+            return result;
+        }
+
+        /**
+         * @return the progress of the run, shared with the other subscribers.
+         */
+        public MeasurementProgress getProgress() {
+            return run.progress;
+        }
+
+        /**
+         * Cancels this subscription; the measurement itself is only cancelled if nobody else is waiting for it.
+         */
+        public void cancel() {
+            synchronized (AsyncMeasurement.this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (--run.numSubscribers == 0) {
+                    run.progress.cancel();
+                }
+            }
+            result.completeExceptionally(new CancellationException("Measurement cancelled."));
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "async-measurement");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final Map<String, Run<?>> current = new HashMap<>(); // by kind, guarded by this
+
+    /**
+     * @return the measurement runner of the given service, created on first use and shut down with the service.
+     */
+    public static AsyncMeasurement get(VaadinService service) {
+        return service.getContext().getAttribute(AsyncMeasurement.class, () -> {
+            AsyncMeasurement asyncMeasurement = new AsyncMeasurement();
+            service.addServiceDestroyListener(serviceDestroyEvent -> asyncMeasurement.shutdown());
+            return asyncMeasurement;
+        });
+    }
+
+    /**
+     * Starts a deep size measurement, unless one is running already: then that one is joined and the given one is dropped.
+     */
+    public Measurement<SizeOfCalculator.DeepSize> start(Function<MeasurementProgress, SizeOfCalculator.DeepSize> measurement) {
+        return start(DEEP_SIZE, measurement);
+    }
+
+    /**
+     * Starts a measurement of the given kind, unless one of that kind is running already: then that one is joined
+     * and the given one is dropped. A kind always has to produce the same type of result.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> Measurement<T> start(String kind, Function<MeasurementProgress, T> measurement) {
+        Run<T> running = (Run<T>) current.get(kind);
+        if (running != null && running.isJoinable()) {
+            running.numSubscribers++;
+            return new Measurement<>(running);
+        }
+        final Run<T> started = new Run<>();
+        started.numSubscribers = 1;
+        try {
+            executor.execute(() -> {
+                try {
+                    started.progress.checkCancelled();
+                    started.result.complete(measurement.apply(started.progress));
+                } catch (Throwable t) {
+                    if (!started.progress.isCancelled()) {
+                        logger.log(Level.WARNING, "Measurement of " + kind + " failed.", t);
+                    }
+                    started.result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            started.result.completeExceptionally(e);
+        }
+        current.put(kind, started);
+        return new Measurement<>(started);
+    }
+
+    /**
+     * @return whether a measurement of any kind is running or queued.
+     */
+    public synchronized boolean isRunning() {
+        for (Run<?> run : current.values()) {
+            if (!run.result.isDone()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void shutdown() {
+        synchronized (this) {
+            for (Run<?> run : current.values()) {
+                run.progress.cancel(); // for every subscriber
+                run.result.completeExceptionally(new CancellationException("Service destroyed.")); // queued runs never start
+            }
+        }
+        executor.shutdownNow();
+    }
+}
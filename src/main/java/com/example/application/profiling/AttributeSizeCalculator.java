@@ -0,0 +1,203 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.server.VaadinSession;
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.impl.PassThroughFilter;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.example.application.profiling.ObjDescription.getDescription;
+
+/**
+ * Sizes of the attributes of VaadinSessions. The deep size of an attribute is everything reachable from its value
+ * without leading back into the session (ATTRIBUTE scope); the retained size is what would be freed if the attribute
+ * were removed, taken from the dominator tree of the whole session, so objects shared with other attributes or UIs
+ * are not counted.
+ * Attributes are keyed by name, typed attributes by their class name, so the same attribute can be summed up across
+ * all sessions to find which of them dominate the memory footprint.
+ */
+public class AttributeSizeCalculator {
+
+    private static final Logger logger = Logger.getLogger(AttributeSizeCalculator.class.getName());
+
+    public interface AttributeSize {
+        String getSessionDescription();
+        String getKey();
+        String getValueClassName();
+        long getDeepSize();
+        long getRetainedSize();
+    }
+
+    public interface AttributeTotal {
+        String getKey();
+        int getNumberOfSessions();
+        long getTotalDeepSize();
+        long getTotalRetainedSize();
+    }
+
+    private static class Attribute implements AttributeSize {
+        private final String sessionDesc;
+        private final String key;
+        private final String valueClassName;
+        private final long deepSize;
+        private final long retainedSize;
+
+        Attribute(String sessionDesc, String key, String valueClassName, long deepSize, long retainedSize) {
+            this.sessionDesc = sessionDesc;
+            this.key = key;
+            this.valueClassName = valueClassName;
+            this.deepSize = deepSize;
+            this.retainedSize = retainedSize;
+        }
+
+        @Override
+        public String getSessionDescription() {
+            return sessionDesc;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValueClassName() {
+            return valueClassName;
+        }
+
+        @Override
+        public long getDeepSize() {
+            return deepSize;
+        }
+
+        @Override
+        public long getRetainedSize() {
+            return retainedSize;
+        }
+    }
+
+    private static class Total implements AttributeTotal {
+        private final String key;
+        private int numSessions;
+        private long totalDeepSize;
+        private long totalRetainedSize;
+
+        Total(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public int getNumberOfSessions() {
+            return numSessions;
+        }
+
+        @Override
+        public long getTotalDeepSize() {
+            return totalDeepSize;
+        }
+
+        @Override
+        public long getTotalRetainedSize() {
+            return totalRetainedSize;
+        }
+    }
+
+    private AttributeSizeCalculator() {
+    }
+
+    /**
+     * @return the attributes of the session, largest retained size first.
+     */
+    public static List<AttributeSize> calculateAttributeSizesOf(VaadinSession session) {
+        return calculateAttributeSizesOf(session, null);
+    }
+
+    /**
+     * Like {@link #calculateAttributeSizesOf(VaadinSession)}, ending with a CancellationException once the progress
+     * is cancelled.
+     */
+    public static List<AttributeSize> calculateAttributeSizesOf(VaadinSession session, MeasurementProgress progress) {
+        Map<String, Object> attributes = copyOf(session);
+        if (attributes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        SizeOf shallowSizeOf = SizeOfEngine.getActive().newInstance(new PassThroughFilter());
+        ObjectGraph graph = ObjectGraph.capture(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION), shallowSizeOf, progress);
+        DominatorTree dominatorTree = new DominatorTree(graph);
+        SizeOf attributeSizeOf = SizeOfEngine.getActive().newInstance(new VaadinScopeFilter(VaadinScopeFilter.Scope.ATTRIBUTE));
+
+        String sessionDesc = getDescription(session);
+        List<AttributeSize> retVal = new ArrayList<>(attributes.size());
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            Object value = attribute.getValue();
+            int node = graph.idOf(value);
+            long retainedSize = (node < 0 ? 0 : dominatorTree.getRetainedSize(node)); // not in the graph: a boundary object, owned by someone else
+            long deepSize = (node < 0 ? 0 : attributeSizeOf.deepSizeOf(value));
+            retVal.add(new Attribute(sessionDesc, attribute.getKey(), value.getClass().getName(), deepSize, retainedSize));
+        }
+        retVal.sort(Comparator.comparingLong(AttributeSize::getRetainedSize).reversed());
+        return retVal;
+    }
+
+    /**
+     * @return the attributes summed up by key across the sessions, largest total retained size first, at most n of them.
+     */
+    public static List<AttributeTotal> calculateTopAttributesOf(Collection<VaadinSession> sessions, int n) {
+        return calculateTopAttributesOf(sessions, n, null);
+    }
+
+    /**
+     * Like {@link #calculateTopAttributesOf(Collection, int)}, reporting one task per session. This builds a graph of
+     * every session in turn, so it belongs on a measuring thread (see AsyncMeasurement); it ends with a
+     * CancellationException once the progress is cancelled.
+     */
+    public static List<AttributeTotal> calculateTopAttributesOf(Collection<VaadinSession> sessions, int n, MeasurementProgress progress) {
+        if (progress != null) {
+            progress.setTotal(sessions.size());
+        }
+        Map<String, Total> totals = new HashMap<>();
+        for (VaadinSession session : sessions) {
+            List<AttributeSize> attributes = calculateAttributeSizesOf(session, progress);
+            if (progress != null) {
+                progress.taskCompleted();
+            }
+            for (AttributeSize attribute : attributes) {
+                Total total = totals.computeIfAbsent(attribute.getKey(), Total::new);
+                total.numSessions++;
+                total.totalDeepSize += attribute.getDeepSize();
+                total.totalRetainedSize += attribute.getRetainedSize();
+            }
+        }
+        List<AttributeTotal> retVal = new ArrayList<>(totals.values());
+        retVal.sort(Comparator.comparingLong(AttributeTotal::getTotalRetainedSize).reversed()
+                .thenComparing(Comparator.comparingLong(AttributeTotal::getTotalDeepSize).reversed()));
+        return (retVal.size() > n ? new ArrayList<>(retVal.subList(0, n)) : retVal);
+    }
+
+    private static Map<String, Object> copyOf(VaadinSession session) {
+        // the attribute map is read without the session lock, a concurrent change only costs a retry
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                Map<String, Object> copy = new LinkedHashMap<>();
+                for (Map.Entry<String, Object> attribute : VaadinVisitor.getAttributes(session).entrySet()) {
+                    if (attribute.getValue() != null) {
+                        copy.put(attribute.getKey(), attribute.getValue());
+                    }
+                }
+                return copy;
+            } catch (ConcurrentModificationException e) {
+                logger.log(Level.FINE, "Attributes of " + getDescription(session) + " changed while reading them, retrying.");
+            }
+        }
+        logger.log(Level.INFO, "Attributes of " + getDescription(session) + " keep changing, skipping the session.");
+        return Collections.emptyMap();
+    }
+}
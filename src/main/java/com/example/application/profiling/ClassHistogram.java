@@ -0,0 +1,79 @@
+package com.example.application.profiling;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Per-class instance counts and shallow byte totals, kept in primitive arrays and keyed by Class identity, so
+ * recording an instance of an already known class does not allocate.
+ */
+public class ClassHistogram {
+
+    private final IdentityHashMap<Class<?>, Integer> indices = new IdentityHashMap<>();
+    private Class<?>[] classes = new Class<?>[64];
+    private long[] counts = new long[64];
+    private long[] bytes = new long[64];
+    private int size;
+
+    public void add(Class<?> clazz, long shallowSize) {
+        Integer index = indices.get(clazz);
+        if (index == null) {
+            index = newIndex(clazz);
+        }
+        counts[index]++;
+        bytes[index] += shallowSize;
+    }
+
+    private int newIndex(Class<?> clazz) {
+        if (size == classes.length) {
+            classes = Arrays.copyOf(classes, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+            bytes = Arrays.copyOf(bytes, size * 2);
+        }
+        classes[size] = clazz;
+        indices.put(clazz, size);
+        return size++;
+    }
+
+    public void merge(ClassHistogram other) {
+        for (int i = 0; i < other.size; i++) {
+            Integer index = indices.get(other.classes[i]);
+            if (index == null) {
+                index = newIndex(other.classes[i]);
+            }
+            counts[index] += other.counts[i];
+            bytes[index] += other.bytes[i];
+        }
+    }
+
+    public int getNumberOfClasses() {
+        return size;
+    }
+
+    public long getCount(Class<?> clazz) {
+        Integer index = indices.get(clazz);
+        return (index == null ? 0 : counts[index]);
+    }
+
+    public long getBytes(Class<?> clazz) {
+        Integer index = indices.get(clazz);
+        return (index == null ? 0 : bytes[index]);
+    }
+
+    /**
+     * @return the classes with the most instances, at most n of them, in descending order of instance count.
+     */
+    public Class<?>[] getTopClasses(int n) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+        Class<?>[] retVal = new Class<?>[Math.min(n, size)];
+        for (int i = 0; i < retVal.length; i++) {
+            retVal[i] = classes[order[i]];
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.application.profiling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which classes SizeOfCalculator keeps statistics for. A class matches if its name starts with one of the
+ * prefixes or matches one of the include patterns, and matches none of the exclude patterns.
+ * Patterns are globs ("com.example.**.views.*View"; * stays within a package, ** does not) unless prefixed with
+ * "regex:"; "glob:" may be given explicitly.
+ * The result is memoized per Class, so only the first instance of a class pays for the string matching.
+ */
+public class ClassMatcher {
+
+    private final String[] prefixes;
+    private final List<Pattern> includes;
+    private final List<Pattern> excludes;
+
+    private final ClassValue<Boolean> memo = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return test(type.getName());
+        }
+    };
+
+    private ClassMatcher(String[] prefixes, List<Pattern> includes, List<Pattern> excludes) {
+        this.prefixes = prefixes;
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    public static ClassMatcher ofPrefixes(String... fullyQualifiedClassnamePrefixes) {
+        return new ClassMatcher(fullyQualifiedClassnamePrefixes, Collections.emptyList(), Collections.emptyList());
+    }
+
+    public static ClassMatcher ofPatterns(List<String> includePatterns, List<String> excludePatterns) {
+        return new ClassMatcher(new String[0], compile(includePatterns), compile(excludePatterns));
+    }
+
+    /**
+     * @return a matcher that additionally requires classes not to match any of the exclude patterns.
+     */
+    public ClassMatcher excluding(List<String> excludePatterns) {
+        List<Pattern> allExcludes = new ArrayList<>(excludes);
+        allExcludes.addAll(compile(excludePatterns));
+        return new ClassMatcher(prefixes, includes, allExcludes);
+    }
+
+    public boolean matches(Class<?> clazz) {
+        return memo.get(clazz);
+    }
+
+    private boolean test(String className) {
+        boolean included = false;
+        for (String prefix : prefixes) {
+            if (className.startsWith(prefix)) {
+                included = true;
+                break;
+            }
+        }
+        for (int i = 0; !included && i < includes.size(); i++) {
+            included = includes.get(i).matcher(className).matches();
+        }
+        if (!included) {
+            return false;
+        }
+        for (Pattern exclude : excludes) {
+            if (exclude.matcher(className).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Pattern> compile(List<String> patterns) {
+        List<Pattern> retVal = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            if (pattern.startsWith("regex:")) {
+                retVal.add(Pattern.compile(pattern.substring("regex:".length())));
+            }
+            else if (pattern.startsWith("glob:")) {
+                retVal.add(Pattern.compile(globToRegex(pattern.substring("glob:".length()))));
+            }
+            else {
+                retVal.add(Pattern.compile(globToRegex(pattern)));
+            }
+        }
+        return retVal;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                }
+                else {
+                    regex.append("[^.]*");
+                }
+            }
+            else if (c == '?') {
+                regex.append("[^.]");
+            }
+            else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+}
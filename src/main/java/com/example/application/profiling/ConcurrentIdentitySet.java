@@ -0,0 +1,36 @@
+package com.example.application.profiling;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A lock-striped set comparing its elements by identity. Adding does not allocate a wrapper per element, which
+ * matters when it is fed every object of a heap walk.
+ */
+class ConcurrentIdentitySet {
+
+    private final Set<Object>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    ConcurrentIdentitySet(int concurrencyLevel) {
+        int numStripes = Integer.highestOneBit(Math.max(1, concurrencyLevel) * 4 - 1) << 1;
+        this.stripes = new Set[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        this.mask = numStripes - 1;
+    }
+
+    /**
+     * @return true if the object was not contained yet.
+     */
+    boolean add(Object object) {
+        int hash = System.identityHashCode(object);
+        Set<Object> stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+        synchronized (stripe) {
+            return stripe.add(object);
+        }
+    }
+}
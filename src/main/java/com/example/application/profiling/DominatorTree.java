@@ -0,0 +1,161 @@
+package com.example.application.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Immediate dominators and retained sizes of an ObjectGraph, rooted at its node 0. An object dominates another if
+ * every path from the root to the other object passes through it; the retained size of an object is the sum of
+ * the shallow sizes of all objects it dominates, i.e. what would be freed if it became unreachable.
+ * Uses the Lengauer-Tarjan algorithm with path compression, without recursion so that deep graphs (long linked
+ * lists) do not overflow the stack.
+ */
+class DominatorTree {
+
+    private final int[] idom; // by node id, -1 for the root and for nodes the root does not reach
+    private final long[] retainedSizes; // by node id, 0 for nodes the root does not reach
+
+    DominatorTree(ObjectGraph graph) {
+        final int n = graph.size();
+
+        // depth first numbering; everything below works on dfs numbers
+        int[] dfnum = new int[n];
+        Arrays.fill(dfnum, -1);
+        int[] vertex = new int[n];
+        int[] parent = new int[n];
+        int[] stack = new int[n];
+        int[] nextEdge = new int[n];
+        int count = 0;
+        int sp = 0;
+        dfnum[0] = count;
+        vertex[count] = 0;
+        parent[count] = -1;
+        count++;
+        stack[sp] = 0;
+        nextEdge[sp] = graph.edgeStart[0];
+        sp++;
+        while (sp > 0) {
+            int v = stack[sp - 1];
+            if (nextEdge[sp - 1] < graph.edgeStart[v + 1]) {
+                int w = graph.edgeTargets[nextEdge[sp - 1]++];
+                if (dfnum[w] < 0) {
+                    dfnum[w] = count;
+                    vertex[count] = w;
+                    parent[count] = dfnum[v];
+                    count++;
+                    stack[sp] = w;
+                    nextEdge[sp] = graph.edgeStart[w];
+                    sp++;
+                }
+            }
+            else {
+                sp--;
+            }
+        }
+
+        // predecessors, in compressed sparse row form; nodes the root does not reach (and so their edges) are left out
+        int[] predStart = new int[count + 1];
+        for (int v = 0; v < n; v++) {
+            if (dfnum[v] >= 0) {
+                for (int e = graph.edgeStart[v]; e < graph.edgeStart[v + 1]; e++) {
+                    predStart[dfnum[graph.edgeTargets[e]] + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            predStart[i + 1] += predStart[i];
+        }
+        int[] preds = new int[predStart[count]];
+        int[] fill = Arrays.copyOf(predStart, count);
+        for (int v = 0; v < n; v++) {
+            if (dfnum[v] >= 0) {
+                for (int e = graph.edgeStart[v]; e < graph.edgeStart[v + 1]; e++) {
+                    preds[fill[dfnum[graph.edgeTargets[e]]]++] = dfnum[v];
+                }
+            }
+        }
+
+        int[] semi = new int[count];
+        int[] dom = new int[count];
+        int[] ancestor = new int[count];
+        int[] label = new int[count];
+        int[] bucketHead = new int[count];
+        int[] bucketNext = new int[count];
+        for (int i = 0; i < count; i++) {
+            semi[i] = i;
+            label[i] = i;
+            ancestor[i] = -1;
+            bucketHead[i] = -1;
+        }
+
+        for (int w = count - 1; w >= 1; w--) {
+            for (int p = predStart[w]; p < predStart[w + 1]; p++) {
+                int u = eval(preds[p], ancestor, label, semi, stack);
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+            bucketNext[w] = bucketHead[semi[w]];
+            bucketHead[semi[w]] = w;
+
+            int p = parent[w];
+            ancestor[w] = p; // link
+            for (int v = bucketHead[p]; v != -1; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, stack);
+                dom[v] = (semi[u] < semi[v] ? u : p);
+            }
+            bucketHead[p] = -1;
+        }
+        for (int w = 1; w < count; w++) {
+            if (dom[w] != semi[w]) {
+                dom[w] = dom[dom[w]];
+            }
+        }
+
+        // children have higher dfs numbers than their dominators, so one backward pass sums up the subtrees
+        long[] retained = new long[count];
+        for (int i = 0; i < count; i++) {
+            retained[i] = graph.shallowSizes[vertex[i]];
+        }
+        for (int w = count - 1; w >= 1; w--) {
+            retained[dom[w]] += retained[w];
+        }
+
+        this.idom = new int[n];
+        this.retainedSizes = new long[n];
+        Arrays.fill(this.idom, -1);
+        for (int i = 0; i < count; i++) {
+            this.idom[vertex[i]] = (i == 0 ? -1 : vertex[dom[i]]);
+            this.retainedSizes[vertex[i]] = retained[i];
+        }
+    }
+
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+        if (ancestor[v] == -1) {
+            return v;
+        }
+        // iterative path compression: first walk up, then fix labels from the top down
+        int sp = 0;
+        int x = v;
+        while (ancestor[ancestor[x]] != -1) {
+            stack[sp++] = x;
+            x = ancestor[x];
+        }
+        while (sp > 0) {
+            int y = stack[--sp];
+            int a = ancestor[y];
+            if (semi[label[a]] < semi[label[y]]) {
+                label[y] = label[a];
+            }
+            ancestor[y] = ancestor[a];
+        }
+        return label[v];
+    }
+
+    int getImmediateDominator(int node) {
+        return idom[node];
+    }
+
+    long getRetainedSize(int node) {
+        return retainedSizes[node];
+    }
+}
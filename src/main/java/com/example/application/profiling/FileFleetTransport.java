@@ -0,0 +1,64 @@
+package com.example.application.profiling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A FleetTransport over a directory: every node keeps one file, &lt;node id&gt;.vmns, replaced atomically on each
+ * publish. Several nodes on one machine can share a local directory; across machines it has to be a shared volume.
+ * Files older than the maximum age are ignored, so a node that went away drops out of the fleet view.
+ */
+public class FileFleetTransport implements FleetTransport {
+
+    private static final Logger logger = Logger.getLogger(FileFleetTransport.class.getName());
+
+    private static final String SUFFIX = ".vmns";
+
+    private final Path directory;
+    private final long maxAgeMillis;
+
+    public FileFleetTransport(Path directory, long maxAgeMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @Override
+    public void publish(NodeSummary summary) throws IOException {
+        Path target = directory.resolve(summary.getNodeId().replaceAll("[^A-Za-z0-9._-]", "_") + SUFFIX);
+        Path temp = Files.createTempFile(directory, "publishing-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                summary.write(out);
+            }
+            // readers see either the previous summary or this one, never half of it
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public List<NodeSummary> collect() throws IOException {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        List<NodeSummary> retVal = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    NodeSummary summary = NodeSummary.read(in);
+                    if (summary.getTimestampMillis() >= oldest) {
+                        retVal.add(summary);
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Skipping unreadable node summary " + file + ".", e);
+                }
+            }
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.application.profiling;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Merges the {@link NodeSummary}s of a cluster into a fleet-wide view: totals, the largest classes and sessions over
+ * all nodes, and how far each node is from the mean, so imbalanced nodes stand out.
+ * <pre>
+ * java -cp target/classes com.example.application.profiling.FleetAggregator &lt;directory&gt; [n]
+ * </pre>
+ */
+public final class FleetAggregator {
+
+    private final List<NodeSummary> nodes;
+    private final int n;
+    private long totalBytes;
+    private int numSessions;
+    private int numUIs;
+    private int numComponents;
+
+    private FleetAggregator(List<NodeSummary> nodes, int n) {
+        this.nodes = nodes;
+        this.n = n;
+    }
+
+    /**
+     * @param n the number of classes and of sessions to rank
+     */
+    public static FleetAggregator aggregate(Collection<NodeSummary> summaries, int n) {
+        List<NodeSummary> nodes = new ArrayList<>(summaries);
+        nodes.sort(Comparator.comparingLong(NodeSummary::getTotalBytes).reversed());
+        FleetAggregator fleet = new FleetAggregator(Collections.unmodifiableList(nodes), n);
+        for (NodeSummary node : nodes) {
+            fleet.totalBytes += node.getTotalBytes();
+            fleet.numSessions += node.getNumberOfSessions();
+            fleet.numUIs += node.getNumberOfUIs();
+            fleet.numComponents += node.getNumberOfComponents();
+        }
+        return fleet;
+    }
+
+    /**
+     * @return the nodes, largest deep size of all sessions first.
+     */
+    public List<NodeSummary> getNodes() {
+        return nodes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getNumberOfSessions() {
+        return numSessions;
+    }
+
+    public int getNumberOfUIs() {
+        return numUIs;
+    }
+
+    public int getNumberOfComponents() {
+        return numComponents;
+    }
+
+    /**
+     * @return the deep size of all sessions of the node relative to the mean over all nodes: 1 is average, 2 twice as much.
+     */
+    public double getImbalance(NodeSummary node) {
+        double mean = (double) totalBytes / Math.max(1, nodes.size());
+        return (mean == 0 ? 1 : node.getTotalBytes() / mean);
+    }
+
+    /**
+     * @return the largest classes summed over all nodes, largest first. Classes that are not among the largest of a
+     * node count zero for it, so the sums are lower bounds.
+     */
+    public Map<String, Long> getClassBytes() {
+        Map<String, Long> sums = new HashMap<>();
+        for (NodeSummary node : nodes) {
+            node.getClassBytes().forEach((className, bytes) -> sums.merge(className, bytes, Long::sum));
+        }
+        return largest(sums);
+    }
+
+    /**
+     * @return the largest sessions of all nodes as "node id/session description", largest first.
+     */
+    public Map<String, Long> getSessionBytes() {
+        Map<String, Long> all = new HashMap<>();
+        for (NodeSummary node : nodes) {
+            node.getSessionBytes().forEach((session, bytes) -> all.put(node.getNodeId() + "/" + session, bytes));
+        }
+        return largest(all);
+    }
+
+    private Map<String, Long> largest(Map<String, Long> bytes) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(bytes.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        LinkedHashMap<String, Long> retVal = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(n, entries.size()))) {
+            retVal.put(entry.getKey(), entry.getValue());
+        }
+        return retVal;
+    }
+
+    public void print(PrintStream out) {
+        out.println(nodes.size() + " node(s), " + numSessions + " session(s), " + numUIs + " UI(s), " + numComponents
+                + " component(s), deep size of all sessions " + totalBytes + ".");
+        out.println();
+        out.println("Nodes:");
+        for (NodeSummary node : nodes) {
+            out.println("  " + node.getNodeId() + ": " + node.getTotalBytes() + " bytes (" + String.format(Locale.ROOT, "%.2f", getImbalance(node))
+                    + " x mean) in " + node.getNumberOfSessions() + " session(s), heap " + node.getUsedHeapBytes() + " of " + node.getMaxHeapBytes() + ".");
+        }
+        out.println();
+        out.println("Classes by shallow bytes:");
+        getClassBytes().forEach((className, bytes) -> out.println("  " + className + ": " + bytes + "."));
+        out.println();
+        out.println("Sessions by deep size:");
+        getSessionBytes().forEach((session, bytes) -> out.println("  " + session + ": " + bytes + "."));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: FleetAggregator <directory> [number of classes and sessions to show, default 20]");
+            System.exit(2);
+        }
+        int n = (args.length == 2 ? Integer.parseInt(args[1]) : 20);
+        FileFleetTransport transport = new FileFleetTransport(Paths.get(args[0]), Long.MAX_VALUE);
+        aggregate(transport.collect(), n).print(System.out);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.application.profiling;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Carries the {@link NodeSummary}s of the nodes of a cluster to whoever aggregates them. {@link FileFleetTransport}
+ * shares a directory; other transports (a message broker, a shared cache) only need to implement these two methods.
+ */
+public interface FleetTransport {
+
+    /**
+     * Publishes the latest summary of this node, replacing its previous one.
+     */
+    void publish(NodeSummary summary) throws IOException;
+
+    /**
+     * @return the latest summary of every node that published recently enough, including this one.
+     */
+    List<NodeSummary> collect() throws IOException;
+}
@@ -0,0 +1,78 @@
+package com.example.application.profiling;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A fixed-size ring buffer of footprint samples; the oldest sample is dropped when a new one does not fit.
+ */
+public class FootprintHistory {
+
+    public interface Sample {
+        long getTimestampMillis();
+        long getDurationNanos();
+        long getCpuNanos();
+        long getTotalBytes();
+        Map<String, Long> getSessionBytes();
+        Map<String, Long> getUIBytes();
+        Map<String, Long> getClassBytes();
+    }
+
+    private final Sample[] samples;
+    private int next;
+    private int size;
+
+    public FootprintHistory(int capacity) {
+        this.samples = new Sample[capacity];
+    }
+
+    public synchronized void add(Sample sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    /**
+     * @return the samples, oldest first.
+     */
+    public synchronized List<Sample> getSamples() {
+        List<Sample> retVal = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            retVal.add(samples[(next - size + i + samples.length) % samples.length]);
+        }
+        return retVal;
+    }
+
+    public synchronized Optional<Sample> getLatest() {
+        return (size == 0 ? Optional.empty() : Optional.of(samples[(next - 1 + samples.length) % samples.length]));
+    }
+
+    /**
+     * Growth in bytes per minute between the oldest and the newest sample, for every key present in both, e.g.
+     * {@code getGrowthPerMinute(Sample::getSessionBytes)}. Keys are sorted by growth, fastest growing first.
+     */
+    public LinkedHashMap<String, Double> getGrowthPerMinute(Function<Sample, Map<String, Long>> series) {
+        List<Sample> all = getSamples();
+        LinkedHashMap<String, Double> retVal = new LinkedHashMap<>();
+        if (all.size() < 2) {
+            return retVal;
+        }
+        Sample oldest = all.get(0);
+        Sample newest = all.get(all.size() - 1);
+        double minutes = Math.max(1, newest.getTimestampMillis() - oldest.getTimestampMillis()) / 60_000d;
+
+        Map<String, Long> before = series.apply(oldest);
+        List<Map.Entry<String, Double>> growth = new ArrayList<>();
+        series.apply(newest).forEach((key, bytes) -> {
+            Long old = before.get(key);
+            if (old != null) {
+                growth.add(new AbstractMap.SimpleEntry<>(key, (bytes - old) / minutes));
+            }
+        });
+        growth.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        for (Map.Entry<String, Double> entry : growth) {
+            retVal.put(entry.getKey(), entry.getValue());
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.application.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically updates a SessionFootprintTracker on a low-priority daemon thread and keeps the results in a
+ * FootprintHistory, so trends can be read without measuring on a request thread. Only the sampler updates the
+ * tracker; views print its latest report.
+ * The CPU budget is the fraction of one core the sampler may use: after a sample that took c nanoseconds of CPU,
+ * the next one is delayed by at least c * (1 - budget) / budget.
+ */
+public class FootprintSampler {
+
+    Logger logger = Logger.getLogger(FootprintSampler.class.getName());
+
+    private final SessionFootprintTracker tracker;
+    private final long intervalMillis;
+    private final double cpuBudget;
+    private final FootprintHistory history;
+    private final ScheduledExecutorService executor;
+    private final List<SampleListener> sampleListeners = new CopyOnWriteArrayList<>();
+    private volatile SessionFootprintTracker.FootprintReport latestReport;
+
+    public interface SampleListener {
+        /**
+         * Called on the sampler thread after the sample was added to the history; the report holds the footprints
+         * the sample was made of.
+         */
+        void sampled(FootprintHistory.Sample sample, SessionFootprintTracker.FootprintReport report);
+    }
+
+    public FootprintSampler(SessionFootprintTracker tracker, long intervalMillis, double cpuBudget, int historySize) {
+        if (cpuBudget <= 0 || cpuBudget > 1) {
+            throw new IllegalArgumentException("CPU budget must be in (0, 1], was " + cpuBudget);
+        }
+        this.tracker = tracker;
+        this.intervalMillis = intervalMillis;
+        this.cpuBudget = cpuBudget;
+        this.history = new FootprintHistory(historySize);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "footprint-sampler");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public void start() {
+        schedule(intervalMillis);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public FootprintHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * @return the report of the latest sample, empty before the first one.
+     */
+    public Optional<SessionFootprintTracker.FootprintReport> getLatestReport() {
+        return Optional.ofNullable(latestReport);
+    }
+
+    public void addSampleListener(SampleListener listener) {
+        sampleListeners.add(listener);
+    }
+
+    private void schedule(long delayMillis) {
+        try {
+            executor.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.log(Level.FINE, "Sampler stopped, not scheduling another sample.");
+        }
+    }
+
+    private void run() {
+        final long cpuStart = cpuTime();
+        try {
+            final SessionFootprintTracker.FootprintReport report = tracker.update();
+            FootprintHistory.Sample sample = sample(report, cpuStart);
+            history.add(sample);
+            latestReport = report;
+            for (SampleListener listener : sampleListeners) {
+                listener.sampled(sample, report);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Footprint sampling failed.", e);
+        } finally {
+            long cpuNanos = cpuTime() - cpuStart;
+            long budgetDelayMillis = (long) (cpuNanos * (1 - cpuBudget) / cpuBudget / 1_000_000);
+            schedule(Math.max(intervalMillis, budgetDelayMillis));
+        }
+    }
+
+    private FootprintHistory.Sample sample(SessionFootprintTracker.FootprintReport report, long cpuStart) {
+        final long timestamp = System.currentTimeMillis();
+
+        final Map<String, Long> sessionBytes = new HashMap<>();
+        final Map<String, Long> uiBytes = new HashMap<>();
+        for (SessionFootprintTracker.SessionFootprint footprint : report.getSessionFootprints()) {
+            sessionBytes.put(footprint.getSessionDescription(), footprint.getDeepSize());
+            uiBytes.putAll(footprint.getUIDeepSizes());
+        }
+        final Map<String, Long> classBytes = new HashMap<>();
+        ClassHistogram classHistogram = report.getClassHistogram();
+        for (Class<?> clazz : classHistogram.getTopClasses(classHistogram.getNumberOfClasses())) {
+            classBytes.put(clazz.getName(), classHistogram.getBytes(clazz));
+        }
+
+        final long duration = report.getUpdateDurationNanos();
+        final long totalBytes = report.getTotalDeepSize();
+        final long cpuNanos = cpuTime() - cpuStart;
+        return new FootprintHistory.Sample() {
+            @Override
+            public long getTimestampMillis() {
+                return timestamp;
+            }
+
+            @Override
+            public long getDurationNanos() {
+                return duration;
+            }
+
+            @Override
+            public long getCpuNanos() {
+                return cpuNanos;
+            }
+
+            @Override
+            public long getTotalBytes() {
+                return totalBytes;
+            }
+
+            @Override
+            public Map<String, Long> getSessionBytes() {
+                return Collections.unmodifiableMap(sessionBytes);
+            }
+
+            @Override
+            public Map<String, Long> getUIBytes() {
+                return Collections.unmodifiableMap(uiBytes);
+            }
+
+            @Override
+            public Map<String, Long> getClassBytes() {
+                return Collections.unmodifiableMap(classBytes);
+            }
+        };
+    }
+
+    private static long cpuTime() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled()) {
+            return threadMXBean.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime(); // wall clock time is a conservative stand-in
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.application.profiling;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary file of a measurement, for comparing measurements offline with {@link SnapshotDiff}.
+ * The layout is a fixed header followed by two sections, each sorted by key, so two snapshots can be compared in a
+ * single merge pass that holds only one record of each in memory:
+ * <pre>
+ * header   int magic "VMSN", int version, UTF JVM id, long timestamp millis, long deep size, int #classes, int #sessions
+ * classes  UTF name, long instance count, long shallow bytes                                  (sorted by name)
+ * sessions UTF description, long deep size (-1 if unknown), int #UIs, int #components, int #attributes (sorted)
+ * </pre>
+ * All numbers are big-endian as written by DataOutputStream, strings are modified UTF-8.
+ * The records are variable-length, with their strings inline, so the file can only be read front to back, not
+ * memory-mapped and searched by key. That is all the diff needs: it streams both files in one pass with constant
+ * memory. Random access would take fixed-width records, a string table and an index of the section offsets.
+ * Sessions are keyed by their description, whose id is only unique within one JVM lifetime (see ObjectIds): after a
+ * restart, VaadinSession@1 is another session. The JVM id (pid@host and start time) tells whether the sessions of two
+ * snapshots can be matched at all. HTTP session ids would be stable across restarts with persistent sessions, but a
+ * snapshot leaves the server, so it must not carry them.
+ */
+public final class FootprintSnapshot {
+
+    static final int MAGIC = 0x564D534E; // "VMSN"
+    static final int VERSION = 2;
+
+    public static final class ClassRecord {
+        private final String name;
+        private final long count;
+        private final long bytes;
+
+        ClassRecord(String name, long count, long bytes) {
+            this.name = name;
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    public static final class SessionRecord {
+        private final String description;
+        private final long bytes;
+        private final int numUIs;
+        private final int numComponents;
+        private final int numAttributes;
+
+        SessionRecord(String description, long bytes, int numUIs, int numComponents, int numAttributes) {
+            this.description = description;
+            this.bytes = bytes;
+            this.numUIs = numUIs;
+            this.numComponents = numComponents;
+            this.numAttributes = numAttributes;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public long getBytes() {
+            return bytes; // -1 if unknown
+        }
+
+        public int getNumberOfUIs() {
+            return numUIs;
+        }
+
+        public int getNumberOfComponents() {
+            return numComponents;
+        }
+
+        public int getNumberOfAttributes() {
+            return numAttributes;
+        }
+    }
+
+    private FootprintSnapshot() {
+    }
+
+    private static String getJvmId() {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        return runtime.getName() + " started " + runtime.getStartTime(); // pid@host, unique even if the pid is reused
+    }
+
+    /**
+     * Writes the measurement; the stream is flushed, not closed.
+     *
+     * @param sessionBytes deep sizes by session description, e.g. from the latest {@link FootprintHistory.Sample}; may be empty
+     */
+    public static void write(SizeOfCalculator.DeepSize deepSize, Map<String, Long> sessionBytes, OutputStream out) throws IOException {
+        ClassHistogram classHistogram = deepSize.getClassHistogram();
+        Class<?>[] classes = classHistogram.getTopClasses(classHistogram.getNumberOfClasses());
+        Arrays.sort(classes, Comparator.comparing(Class::getName));
+        List<ClassRecord> classRecords = new ArrayList<>(classes.length);
+        for (int i = 0; i < classes.length; ) {
+            String name = classes[i].getName();
+            long count = 0;
+            long bytes = 0;
+            for (; i < classes.length && classes[i].getName().equals(name); i++) {
+                count += classHistogram.getCount(classes[i]); // classes of the same name from different class loaders share a record
+                bytes += classHistogram.getBytes(classes[i]);
+            }
+            classRecords.add(new ClassRecord(name, count, bytes));
+        }
+
+        VaadinVisitor.VaadinStatistics vaadinStatistics = deepSize.getVaadinStatistics();
+        int numSessions = vaadinStatistics.getNumberOfKnownSessions();
+        List<SessionRecord> sessionRecords = new ArrayList<>(numSessions);
+        for (int session = 0; session < numSessions; session++) {
+            int numComponents = 0;
+            for (int ui = vaadinStatistics.getFirstUI(session), end = ui + vaadinStatistics.getNumberOfUIs(session); ui < end; ui++) {
+                numComponents += vaadinStatistics.getNumberOfComponents(ui);
+            }
+            String description = vaadinStatistics.getSessionDescription(session);
+            sessionRecords.add(new SessionRecord(description, sessionBytes.getOrDefault(description, -1L), vaadinStatistics.getNumberOfUIs(session),
+                    numComponents, vaadinStatistics.getAttributeKeys(session).size()));
+        }
+        sessionRecords.sort(Comparator.comparing(SessionRecord::getDescription));
+
+        write(getJvmId(), System.currentTimeMillis(), deepSize.getDeepSize(), classRecords, sessionRecords, out);
+    }
+
+    /**
+     * Writes the records as they are, classes sorted by name and sessions by description; the stream is flushed, not closed.
+     */
+    static void write(String jvmId, long timestampMillis, long deepSize, List<ClassRecord> classes, List<SessionRecord> sessions,
+                      OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(jvmId);
+        data.writeLong(timestampMillis);
+        data.writeLong(deepSize);
+        data.writeInt(classes.size());
+        data.writeInt(sessions.size());
+        for (ClassRecord record : classes) {
+            data.writeUTF(record.name);
+            data.writeLong(record.count);
+            data.writeLong(record.bytes);
+        }
+        for (SessionRecord record : sessions) {
+            data.writeUTF(record.description);
+            data.writeLong(record.bytes);
+            data.writeInt(record.numUIs);
+            data.writeInt(record.numComponents);
+            data.writeInt(record.numAttributes);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a snapshot front to back: first the classes, then the sessions. Asking for the sessions skips any classes
+     * not read yet.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream data;
+        private final String jvmId;
+        private final long timestampMillis;
+        private final long deepSize;
+        private final int numClasses;
+        private final int numSessions;
+        private int classesRead;
+        private int sessionsRead;
+
+        public Reader(InputStream in) throws IOException {
+            this.data = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a footprint snapshot.");
+            }
+            int version = data.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ".");
+            }
+            this.jvmId = data.readUTF();
+            this.timestampMillis = data.readLong();
+            this.deepSize = data.readLong();
+            this.numClasses = data.readInt();
+            this.numSessions = data.readInt();
+        }
+
+        /**
+         * @return the JVM the snapshot was taken in; only snapshots of the same JVM have comparable sessions.
+         */
+        public String getJvmId() {
+            return jvmId;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public long getDeepSize() {
+            return deepSize;
+        }
+
+        public int getNumberOfClasses() {
+            return numClasses;
+        }
+
+        public int getNumberOfSessions() {
+            return numSessions;
+        }
+
+        /**
+         * @return the next class in name order, null after the last one.
+         */
+        public ClassRecord nextClass() throws IOException {
+            if (classesRead == numClasses) {
+                return null;
+            }
+            classesRead++;
+            return new ClassRecord(data.readUTF(), data.readLong(), data.readLong());
+        }
+
+        /**
+         * @return the next session in description order, null after the last one.
+         */
+        public SessionRecord nextSession() throws IOException {
+            while (nextClass() != null) {
+                // skip the rest of the class section
+            }
+            if (sessionsRead == numSessions) {
+                return null;
+            }
+            sessionsRead++;
+            return new SessionRecord(data.readUTF(), data.readLong(), data.readInt(), data.readInt(), data.readInt());
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.application.profiling;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.vaadin.flow.server.VaadinService;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Times measurements after natural garbage collections instead of forcing one with System.gc(), which on a large
+ * heap is a stop-the-world full GC every user of the node pays for. It listens to the GC notifications of the
+ * GarbageCollectorMXBeans; a measurement waits for the next collection, up to a maximum wait, and then runs while
+ * the heap holds little garbage. The heap usage right after the last collection, as its notification reports it, is
+ * a free baseline to compare deep sizes with.
+ * Explicit GC can still be configured (see GcAwareScheduling); it is off by default.
+ */
+public class GcAwareScheduler {
+
+    private static final Logger logger = Logger.getLogger(GcAwareScheduler.class.getName());
+
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 30_000;
+    private static final long CANCEL_CHECK_MILLIS = 100;
+
+    public interface GcEvent {
+        String getGcName();
+        String getGcAction(); // e.g. "end of minor GC", "end of major GC"
+        long getEndMillis();
+        long getHeapUsedAfter();
+    }
+
+    private final long maxWaitMillis;
+    private final boolean explicitGc;
+    private final Map<NotificationEmitter, NotificationListener> listeners = new HashMap<>();
+    private long numCollections; // guarded by this
+    private GcEvent lastCollection; // guarded by this
+
+    /**
+     * @param maxWaitMillis how long a measurement waits for a natural collection before it runs anyway
+     * @param explicitGc    whether to call System.gc() instead of waiting
+     */
+    public GcAwareScheduler(long maxWaitMillis, boolean explicitGc) {
+        this.maxWaitMillis = maxWaitMillis;
+        this.explicitGc = explicitGc;
+        if (explicitGc) {
+            return;
+        }
+        Set<String> heapPools = new HashSet<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        NotificationFilter filter = notification -> GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationListener listener = (notification, handback) -> collected(
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()), heapPools);
+                ((NotificationEmitter) gc).addNotificationListener(listener, filter, null);
+                listeners.put((NotificationEmitter) gc, listener);
+            }
+        }
+        if (listeners.isEmpty()) {
+            logger.log(Level.INFO, "No GC notifications on this JVM, measurements will not wait for collections.");
+        }
+    }
+
+    /**
+     * @return the scheduler of the given service: the one installed by {@link #install}, else one that waits up to
+     * 30 s for a natural collection; it is closed with the service.
+     */
+    public static GcAwareScheduler get(VaadinService service) {
+        return service.getContext().getAttribute(GcAwareScheduler.class, () -> {
+            GcAwareScheduler scheduler = new GcAwareScheduler(DEFAULT_MAX_WAIT_MILLIS, false);
+            service.addServiceDestroyListener(serviceDestroyEvent -> scheduler.close());
+            return scheduler;
+        });
+    }
+
+    public static void install(VaadinService service, GcAwareScheduler scheduler) {
+        service.getContext().setAttribute(scheduler);
+        service.addServiceDestroyListener(serviceDestroyEvent -> scheduler.close());
+    }
+
+    /**
+     * Waits for the next garbage collection, or forces one if explicit GC is configured. Returns early, with a
+     * CancellationException, once the progress is cancelled or the thread interrupted.
+     *
+     * @return whether a collection happened; false if the maximum wait passed without one
+     */
+    public boolean awaitCollection(MeasurementProgress progress) {
+        if (explicitGc) {
+            System.gc();
+            return true;
+        }
+        if (listeners.isEmpty()) {
+            return false;
+        }
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        synchronized (this) {
+            long before = numCollections;
+            long now;
+            while (numCollections == before && (now = System.currentTimeMillis()) < deadline) {
+                progress.checkCancelled();
+                try {
+                    wait(Math.min(CANCEL_CHECK_MILLIS, deadline - now));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting for a garbage collection.");
+                }
+            }
+            return numCollections != before;
+        }
+    }
+
+    /**
+     * @return the latest garbage collection seen, if any.
+     */
+    public synchronized Optional<GcEvent> getLastCollection() {
+        return Optional.ofNullable(lastCollection);
+    }
+
+    /**
+     * @return the bytes used in the heap right after the latest collection seen; before the first notification the
+     * pools' own collection usage, -1 if the JVM does not tell either.
+     */
+    public long getHeapUsedAfterLastCollection() {
+        return getLastCollection().map(GcEvent::getHeapUsedAfter).orElseGet(GcAwareScheduler::getHeapUsedAfterCollection);
+    }
+
+    /**
+     * @return the bytes used in the heap pools right after their latest collection, -1 if the JVM does not tell.
+     * Each pool keeps the usage of its own latest collection, e.g. the old generation that of the last major GC, so
+     * the sum mixes collections of different times; prefer {@link #getHeapUsedAfterLastCollection()}.
+     */
+    public static long getHeapUsedAfterCollection() {
+        long retVal = 0;
+        boolean supported = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = (pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null);
+            if (usage != null) {
+                retVal += usage.getUsed();
+                supported = true;
+            }
+        }
+        return (supported ? retVal : -1);
+    }
+
+    public void close() {
+        listeners.forEach((emitter, listener) -> {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                logger.log(Level.FINE, "GC listener was already removed.", e);
+            }
+        });
+        listeners.clear();
+    }
+
+    private void collected(GarbageCollectionNotificationInfo info, Set<String> heapPools) {
+        long heapUsedAfter = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                heapUsedAfter += pool.getValue().getUsed();
+            }
+        }
+        final String gcName = info.getGcName();
+        final String gcAction = info.getGcAction();
+        final long endMillis = System.currentTimeMillis();
+        final long used = heapUsedAfter;
+        synchronized (this) {
+            lastCollection = new GcEvent() {
+                @Override
+                public String getGcName() {
+                    return gcName;
+                }
+
+                @Override
+                public String getGcAction() {
+                    return gcAction;
+                }
+
+                @Override
+                public long getEndMillis() {
+                    return endMillis;
+                }
+
+                @Override
+                public long getHeapUsedAfter() {
+                    return used;
+                }
+            };
+            numCollections++;
+            notifyAll();
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, gcName + " (" + gcAction + ") left " + used + " bytes in the heap.");
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the live sessions, UIs and components of a VaadinService from their lifecycle events (see
+ * ApplicationServiceInitListener), so the counts and which UIs belong to which session are known without walking
+ * the heap; a deep crawl is only needed for sizes.
+ * Sessions and UIs are held weakly: one that is garbage collected without a destroy or detach event is dropped, and
+ * its counts are taken back, on the next call. Flow has no node-wide component attach event, so the components of a
+ * UI are recounted from its component tree whenever the UI navigates.
+ */
+public class LiveRegistry {
+
+    private static final class SessionEntry {
+        private final Set<WeakIdentityKey<UI>> uis = ConcurrentHashMap.newKeySet();
+    }
+
+    private static final class UIEntry {
+        private final WeakIdentityKey<VaadinSession> session;
+        private volatile int numComponents;
+
+        UIEntry(WeakIdentityKey<VaadinSession> session) {
+            this.session = session;
+        }
+    }
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final ConcurrentHashMap<WeakIdentityKey<VaadinSession>, SessionEntry> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<WeakIdentityKey<UI>, UIEntry> uis = new ConcurrentHashMap<>();
+
+    private final LongAdder numSessions = new LongAdder();
+    private final LongAdder numUIs = new LongAdder();
+    private final LongAdder numComponents = new LongAdder();
+
+    /**
+     * @return the registry of the given service, created on first use.
+     */
+    public static LiveRegistry get(VaadinService service) {
+        return service.getContext().getAttribute(LiveRegistry.class, LiveRegistry::new);
+    }
+
+    public void sessionCreated(VaadinSession session) {
+        expungeCollected();
+        if (sessions.putIfAbsent(new WeakIdentityKey<>(session, collected), new SessionEntry()) == null) {
+            numSessions.increment();
+        }
+    }
+
+    public void sessionDestroyed(VaadinSession session) {
+        expungeCollected();
+        SessionEntry entry = sessions.remove(new WeakIdentityKey<>(session, null));
+        if (entry != null) {
+            numSessions.decrement();
+            for (WeakIdentityKey<UI> ui : entry.uis) {
+                removeUI(ui);
+            }
+        }
+    }
+
+    public void uiAttached(UI ui) {
+        expungeCollected();
+        VaadinSession session = ui.getSession();
+        if (session != null) {
+            sessionCreated(session);
+        }
+        WeakIdentityKey<VaadinSession> sessionKey = (session == null ? null : new WeakIdentityKey<>(session, null));
+        WeakIdentityKey<UI> uiKey = new WeakIdentityKey<>(ui, collected);
+        if (uis.putIfAbsent(uiKey, new UIEntry(sessionKey)) == null) {
+            numUIs.increment();
+            SessionEntry sessionEntry = (sessionKey == null ? null : sessions.get(sessionKey));
+            if (sessionEntry != null) {
+                sessionEntry.uis.add(uiKey);
+            }
+            componentsChanged(ui);
+        }
+    }
+
+    public void uiDetached(UI ui) {
+        expungeCollected();
+        removeUI(new WeakIdentityKey<>(ui, null));
+    }
+
+    /**
+     * Recounts the components attached to the UI, e.g. after a navigation swapped the view.
+     */
+    public void componentsChanged(UI ui) {
+        UIEntry entry = uis.get(new WeakIdentityKey<>(ui, null));
+        if (entry != null) {
+            synchronized (entry) {
+                int count = countComponents(ui) - 1; // the UI is not a component of itself
+                numComponents.add(count - entry.numComponents);
+                entry.numComponents = count;
+            }
+        }
+    }
+
+    public long getNumberOfSessions() {
+        expungeCollected();
+        return numSessions.sum();
+    }
+
+    public long getNumberOfUIs() {
+        expungeCollected();
+        return numUIs.sum();
+    }
+
+    public long getNumberOfComponents() {
+        expungeCollected();
+        return numComponents.sum();
+    }
+
+    /**
+     * @return the live UIs of the session, empty if the session is not known.
+     */
+    public List<UI> getUIs(VaadinSession session) {
+        expungeCollected();
+        SessionEntry entry = sessions.get(new WeakIdentityKey<>(session, null));
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        List<UI> retVal = new ArrayList<>(entry.uis.size());
+        for (WeakIdentityKey<UI> ui : entry.uis) {
+            UI referent = ui.get();
+            if (referent != null) {
+                retVal.add(referent);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the number of components the UI had when it last navigated, -1 if the UI is not known.
+     */
+    public int getNumberOfComponents(UI ui) {
+        UIEntry entry = uis.get(new WeakIdentityKey<>(ui, null));
+        return (entry == null ? -1 : entry.numComponents);
+    }
+
+    private void removeUI(WeakIdentityKey<UI> uiKey) {
+        UIEntry entry = uis.remove(uiKey);
+        if (entry == null) {
+            return;
+        }
+        numUIs.decrement();
+        synchronized (entry) {
+            numComponents.add(-entry.numComponents);
+            entry.numComponents = 0;
+        }
+        SessionEntry sessionEntry = (entry.session == null ? null : sessions.get(entry.session));
+        if (sessionEntry != null) {
+            sessionEntry.uis.remove(uiKey);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            // a cleared key only equals itself, so it still finds its own entry
+            if (sessions.remove(reference) != null) {
+                numSessions.decrement();
+            }
+            else {
+                removeUI((WeakIdentityKey<UI>) reference);
+            }
+        }
+    }
+
+    private static int countComponents(Component component) {
+        int[] count = {1};
+        component.getChildren().forEach(child -> count[0] += countComponents(child));
+        return count[0];
+    }
+}
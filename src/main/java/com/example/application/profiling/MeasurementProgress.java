@@ -0,0 +1,69 @@
+package com.example.application.profiling;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and cancellation of a measurement running on another thread. Progress is counted in tasks, e.g. one per
+ * session of a parallel measurement. A cancelled walk notices within a few thousand visited objects and ends with a
+ * CancellationException.
+ */
+public class MeasurementProgress {
+
+    private static final long NOTIFY_INTERVAL_NANOS = 250_000_000L;
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicLong lastNotified = new AtomicLong(System.nanoTime() - NOTIFY_INTERVAL_NANOS);
+    private final List<Runnable> progressListeners = new CopyOnWriteArrayList<>();
+    private volatile int total;
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * The listener is called on the measuring thread at most every 250 ms, and once all tasks are completed.
+     */
+    public void addProgressListener(Runnable listener) {
+        progressListeners.add(listener);
+    }
+
+    void setTotal(int total) {
+        this.total = total;
+        notifyListeners(true);
+    }
+
+    void taskCompleted() {
+        notifyListeners(completed.incrementAndGet() == total);
+    }
+
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Measurement cancelled.");
+        }
+    }
+
+    private void notifyListeners(boolean force) {
+        long now = System.nanoTime();
+        long last = lastNotified.get();
+        if ((force || now - last >= NOTIFY_INTERVAL_NANOS) && lastNotified.compareAndSet(last, now)) {
+            progressListeners.forEach(Runnable::run);
+        }
+    }
+}
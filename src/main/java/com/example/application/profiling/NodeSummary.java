@@ -0,0 +1,173 @@
+package com.example.application.profiling;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A compact summary of the footprint of one node (JVM) of a cluster, published through a {@link FleetTransport} and
+ * merged by the {@link FleetAggregator}. Only totals and the n largest classes and sessions are kept, so a summary
+ * stays a few kilobytes however many sessions the node has.
+ * <pre>
+ * header   int magic "VMNS", int version, UTF node id, long timestamp millis,
+ *          int #sessions, int #UIs, int #components, long deep size of all sessions, long heap used after GC, long max heap
+ * classes  int #classes, then UTF name, long shallow bytes     (largest first)
+ * sessions int #sessions, then UTF description, long deep size (largest first)
+ * </pre>
+ */
+public final class NodeSummary {
+
+    static final int MAGIC = 0x564D4E53; // "VMNS"
+    static final int VERSION = 1;
+
+    private final String nodeId;
+    private final long timestampMillis;
+    private final int numSessions;
+    private final int numUIs;
+    private final int numComponents;
+    private final long totalBytes;
+    private final long usedHeapBytes;
+    private final long maxHeapBytes;
+    private final LinkedHashMap<String, Long> classBytes;
+    private final LinkedHashMap<String, Long> sessionBytes;
+
+    NodeSummary(String nodeId, long timestampMillis, int numSessions, int numUIs, int numComponents, long totalBytes,
+                long usedHeapBytes, long maxHeapBytes, LinkedHashMap<String, Long> classBytes, LinkedHashMap<String, Long> sessionBytes) {
+        this.nodeId = nodeId;
+        this.timestampMillis = timestampMillis;
+        this.numSessions = numSessions;
+        this.numUIs = numUIs;
+        this.numComponents = numComponents;
+        this.totalBytes = totalBytes;
+        this.usedHeapBytes = usedHeapBytes;
+        this.maxHeapBytes = maxHeapBytes;
+        this.classBytes = classBytes;
+        this.sessionBytes = sessionBytes;
+    }
+
+    /**
+     * Summarizes a sample of the local FootprintSampler.
+     *
+     * @param gcAwareScheduler tells the heap usage after the latest collection
+     * @param n                the number of classes and of sessions to keep
+     */
+    public static NodeSummary of(String nodeId, FootprintHistory.Sample sample, SessionFootprintTracker.FootprintReport report,
+                                 GcAwareScheduler gcAwareScheduler, int n) {
+        int numUIs = 0;
+        int numComponents = 0;
+        for (SessionFootprintTracker.SessionFootprint footprint : report.getSessionFootprints()) {
+            numUIs += footprint.getNumberOfUIs();
+            numComponents += footprint.getNumberOfComponents();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long usedHeapBytes = gcAwareScheduler.getHeapUsedAfterLastCollection(); // garbage would make nodes incomparable
+        return new NodeSummary(nodeId, sample.getTimestampMillis(), report.getSessionFootprints().size(), numUIs, numComponents,
+                sample.getTotalBytes(), (usedHeapBytes < 0 ? runtime.totalMemory() - runtime.freeMemory() : usedHeapBytes), runtime.maxMemory(),
+                largest(sample.getClassBytes(), n), largest(sample.getSessionBytes(), n));
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public int getNumberOfSessions() {
+        return numSessions;
+    }
+
+    public int getNumberOfUIs() {
+        return numUIs;
+    }
+
+    public int getNumberOfComponents() {
+        return numComponents;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes; // deep size of all sessions
+    }
+
+    public long getUsedHeapBytes() {
+        return usedHeapBytes; // after the latest collection, where the JVM tells
+    }
+
+    public long getMaxHeapBytes() {
+        return maxHeapBytes;
+    }
+
+    /**
+     * @return the shallow bytes of the largest classes, largest first.
+     */
+    public Map<String, Long> getClassBytes() {
+        return Collections.unmodifiableMap(classBytes);
+    }
+
+    /**
+     * @return the deep sizes of the largest sessions by description, largest first.
+     */
+    public Map<String, Long> getSessionBytes() {
+        return Collections.unmodifiableMap(sessionBytes);
+    }
+
+    /**
+     * Writes the summary; the stream is flushed, not closed.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(nodeId);
+        data.writeLong(timestampMillis);
+        data.writeInt(numSessions);
+        data.writeInt(numUIs);
+        data.writeInt(numComponents);
+        data.writeLong(totalBytes);
+        data.writeLong(usedHeapBytes);
+        data.writeLong(maxHeapBytes);
+        writeEntries(data, classBytes);
+        writeEntries(data, sessionBytes);
+        data.flush();
+    }
+
+    public static NodeSummary read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a node summary.");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported node summary version " + version + ".");
+        }
+        return new NodeSummary(data.readUTF(), data.readLong(), data.readInt(), data.readInt(), data.readInt(), data.readLong(),
+                data.readLong(), data.readLong(), readEntries(data), readEntries(data));
+    }
+
+    private static LinkedHashMap<String, Long> largest(Map<String, Long> bytes, int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(bytes.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        LinkedHashMap<String, Long> retVal = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(n, entries.size()))) {
+            retVal.put(entry.getKey(), entry.getValue());
+        }
+        return retVal;
+    }
+
+    private static void writeEntries(DataOutputStream data, Map<String, Long> entries) throws IOException {
+        data.writeInt(entries.size());
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeLong(entry.getValue());
+        }
+    }
+
+    private static LinkedHashMap<String, Long> readEntries(DataInputStream data) throws IOException {
+        int size = data.readInt();
+        LinkedHashMap<String, Long> retVal = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            retVal.put(data.readUTF(), data.readLong());
+        }
+        return retVal;
+    }
+}
@@ -2,6 +2,11 @@ package com.example.application.profiling;
 
 import javax.annotation.Nullable;
 
+/**
+ * Descriptions of objects for reports. They are derived from unique ids, not from identity hash codes, which
+ * collide on large heaps: className@n carries an id that is unique for the lifetime of the JVM (see ObjectIds), and
+ * className#n marks the n-th object of a single crawl.
+ */
 public class ObjDescription {
     private ObjDescription(){}
 
@@ -10,7 +15,21 @@ public class ObjDescription {
             return "(null)";
         }
         else {
-            return o.getClass().getName() + "@" + System.identityHashCode(o);
+            return getDescription(o.getClass(), ObjectIds.idOf(o));
         }
     }
+
+    /**
+     * The description of an object that is no longer at hand, from its class and ObjectIds id.
+     */
+    public static String getDescription(Class<?> clazz, long id) {
+        return clazz.getName() + "@" + id;
+    }
+
+    /**
+     * The description of an object by its position in one crawl, for objects too numerous to tag individually.
+     */
+    public static String getCrawlDescription(Class<?> clazz, long sequence) {
+        return clazz.getName() + "#" + sequence;
+    }
 }
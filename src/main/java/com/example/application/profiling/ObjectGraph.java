@@ -0,0 +1,237 @@
+package com.example.application.profiling;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A snapshot of the object graph below one root, for analyses the ehcache walker cannot do because it does not
+ * expose the edges it follows. Objects get dense int ids in breadth-first order (the root is 0), edges are stored
+ * in compressed sparse row form: the successors of node i are edgeTargets[edgeStart[i] .. edgeStart[i + 1]).
+ * The same SizeOfFilter as for a SizeOf measurement decides which classes and fields are followed; weak and soft
+ * references are not followed as they do not keep their referents alive.
+ */
+class ObjectGraph {
+
+    private static final Logger logger = Logger.getLogger(ObjectGraph.class.getName());
+
+    final Object[] objects;
+    final long[] shallowSizes;
+    final int[] edgeStart;
+    final int[] edgeTargets;
+    private final IdentityHashMap<Object, Integer> ids;
+
+    private ObjectGraph(IdentityHashMap<Object, Integer> ids, Object[] objects, long[] shallowSizes, int[] edgeStart, int[] edgeTargets) {
+        this.ids = ids;
+        this.objects = objects;
+        this.shallowSizes = shallowSizes;
+        this.edgeStart = edgeStart;
+        this.edgeTargets = edgeTargets;
+    }
+
+    int size() {
+        return objects.length;
+    }
+
+    /**
+     * @return the id of the object, -1 if it is not part of the graph.
+     */
+    int idOf(Object object) {
+        Integer id = ids.get(object);
+        return (id == null ? -1 : id);
+    }
+
+    /**
+     * A graph of the given nodes and edges, without objects behind them; for analyses of graphs built by hand.
+     *
+     * @param successors the successor ids of every node, node 0 being the root
+     */
+    static ObjectGraph of(long[] shallowSizes, int[][] successors) {
+        IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>();
+        Object[] objects = new Object[successors.length];
+        int[] edgeStart = new int[successors.length + 1];
+        for (int id = 0; id < successors.length; id++) {
+            objects[id] = new Object();
+            ids.put(objects[id], id);
+            edgeStart[id + 1] = edgeStart[id] + successors[id].length;
+        }
+        int[] edgeTargets = new int[edgeStart[successors.length]];
+        for (int id = 0; id < successors.length; id++) {
+            System.arraycopy(successors[id], 0, edgeTargets, edgeStart[id], successors[id].length);
+        }
+        return new ObjectGraph(ids, objects, Arrays.copyOf(shallowSizes, successors.length), edgeStart, edgeTargets);
+    }
+
+    /**
+     * @return the ids on a shortest path from the root to the node, root first; empty if the root does not reach it.
+     */
+    int[] pathTo(int node) {
+        // breadth-first from the root; in a captured graph that visits the nodes in id order
+        int[] parents = new int[objects.length];
+        Arrays.fill(parents, -1);
+        int[] queue = new int[objects.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        while (head < tail && parents[node] < 0) {
+            int from = queue[head++];
+            for (int edge = edgeStart[from]; edge < edgeStart[from + 1]; edge++) {
+                int to = edgeTargets[edge];
+                if (to != 0 && parents[to] < 0) {
+                    parents[to] = from;
+                    queue[tail++] = to;
+                }
+            }
+        }
+        if (node != 0 && parents[node] < 0) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int current = node; current != 0; current = parents[current]) {
+            length++;
+        }
+        int[] retVal = new int[length];
+        for (int current = node, i = length - 1; i >= 0; current = parents[current], i--) {
+            retVal[i] = current;
+        }
+        return retVal;
+    }
+
+    static ObjectGraph capture(Object root, SizeOfFilter filter, SizeOf sizeOf) {
+        return capture(root, filter, sizeOf, null);
+    }
+
+    /**
+     * Like {@link #capture(Object, SizeOfFilter, SizeOf)}, stopping with a CancellationException once the progress
+     * is cancelled.
+     */
+    static ObjectGraph capture(Object root, SizeOfFilter filter, SizeOf sizeOf, MeasurementProgress progress) {
+        Walker walker = new Walker(filter);
+
+        IdentityHashMap<Object, Integer> ids = new IdentityHashMap<>();
+        ArrayList<Object> objects = new ArrayList<>();
+        int[] edgeStart = new int[1024];
+        int[] edgeTargets = new int[4096];
+        int numEdges = 0;
+        ArrayList<Object> referents = new ArrayList<>();
+
+        ids.put(root, 0);
+        objects.add(root);
+        for (int id = 0; id < objects.size(); id++) {
+            if (progress != null && (id & 0xFFF) == 0) {
+                progress.checkCancelled();
+            }
+            if (id + 1 >= edgeStart.length) {
+                edgeStart = Arrays.copyOf(edgeStart, edgeStart.length * 2);
+            }
+            edgeStart[id] = numEdges;
+
+            referents.clear();
+            walker.collectReferents(objects.get(id), referents);
+            for (Object referent : referents) {
+                Integer target = ids.get(referent);
+                if (target == null) {
+                    target = objects.size();
+                    ids.put(referent, target);
+                    objects.add(referent);
+                }
+                if (numEdges == edgeTargets.length) {
+                    edgeTargets = Arrays.copyOf(edgeTargets, numEdges * 2);
+                }
+                edgeTargets[numEdges++] = target;
+            }
+        }
+        edgeStart[objects.size()] = numEdges;
+
+        long[] shallowSizes = new long[objects.size()];
+        for (int id = 0; id < shallowSizes.length; id++) {
+            shallowSizes[id] = sizeOf.sizeOf(objects.get(id));
+        }
+
+        return new ObjectGraph(ids, objects.toArray(), shallowSizes, Arrays.copyOf(edgeStart, objects.size() + 1), Arrays.copyOf(edgeTargets, numEdges));
+    }
+
+    /**
+     * Reads the outgoing references of objects, caching the reference fields per class.
+     */
+    static class Walker {
+        private final SizeOfFilter filter;
+        private final Map<Class<?>, Field[]> fieldCache = new HashMap<>();
+        private final Map<Class<?>, Boolean> walkableCache = new HashMap<>();
+
+        Walker(SizeOfFilter filter) {
+            this.filter = filter;
+        }
+
+        void collectReferents(Object object, List<Object> out) {
+            Class<?> clazz = object.getClass();
+            if (clazz.isArray()) {
+                if (!clazz.getComponentType().isPrimitive()) {
+                    for (Object element : (Object[]) object) {
+                        addIfWalkable(element, out);
+                    }
+                }
+                return;
+            }
+            for (Field field : getReferenceFields(clazz)) {
+                try {
+                    addIfWalkable(field.get(object), out);
+                } catch (IllegalAccessException e) {
+                    logger.log(Level.FINE, "Cannot read " + field, e);
+                }
+            }
+        }
+
+        private void addIfWalkable(Object referent, List<Object> out) {
+            if (referent != null && isWalkable(referent.getClass())) {
+                out.add(referent);
+            }
+        }
+
+        boolean isWalkable(Class<?> clazz) {
+            Boolean walkable = walkableCache.get(clazz);
+            if (walkable == null) {
+                // classes are shared by everything, they are never part of what a UI or session holds
+                walkable = clazz != Class.class && filter.filterClass(clazz);
+                walkableCache.put(clazz, walkable);
+            }
+            return walkable;
+        }
+
+        private Field[] getReferenceFields(Class<?> clazz) {
+            Field[] fields = fieldCache.get(clazz);
+            if (fields == null) {
+                List<Field> candidates = new ArrayList<>();
+                for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                    if (c == Reference.class) {
+                        continue; // referent, queue and next are not strong application references
+                    }
+                    for (Field field : c.getDeclaredFields()) {
+                        if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                            candidates.add(field);
+                        }
+                    }
+                }
+                List<Field> accessible = new ArrayList<>(candidates.size());
+                for (Field field : filter.filterFields(clazz, candidates)) {
+                    try {
+                        field.setAccessible(true);
+                        accessible.add(field);
+                    } catch (RuntimeException e) {
+                        // SecurityException, or the module system refusing deep reflection on newer JDKs
+                        logger.log(Level.FINE, "Cannot access " + field + ", not following it.");
+                    }
+                }
+                fields = accessible.toArray(new Field[0]);
+                fieldCache.put(clazz, fields);
+            }
+            return fields;
+        }
+    }
+}
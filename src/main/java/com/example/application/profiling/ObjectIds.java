@@ -0,0 +1,44 @@
+package com.example.application.profiling;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A side table tagging objects with ids that are unique for the lifetime of the JVM, unlike identity hash codes.
+ * Objects are held weakly, so tagging one does not keep it alive; it is meant for the long-lived objects that are
+ * reported on, like sessions and UIs, not for every object of a crawl.
+ */
+final class ObjectIds {
+
+    private static final AtomicLong nextId = new AtomicLong(1);
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private static final ConcurrentHashMap<WeakIdentityKey<Object>, Long> ids = new ConcurrentHashMap<>();
+
+    private ObjectIds() {
+    }
+
+    /**
+     * @return the id of the object, assigned on first use.
+     */
+    static long idOf(Object object) {
+        expungeCollected();
+        Long id = ids.get(new WeakIdentityKey<>(object, null));
+        if (id == null) {
+            Long newId = nextId.getAndIncrement();
+            id = ids.putIfAbsent(new WeakIdentityKey<>(object, collected), newId);
+            if (id == null) {
+                id = newId;
+            }
+        }
+        return id;
+    }
+
+    private static void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            ids.remove(reference);
+        }
+    }
+}
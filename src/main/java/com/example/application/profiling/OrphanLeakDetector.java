@@ -0,0 +1,212 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.server.VaadinSession;
+import org.ehcache.sizeof.impl.PassThroughFilter;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follows the number of orphaned components (not attached to any UI) per class across the updates of a
+ * SessionFootprintTracker, and flags the classes whose orphan count grew over the whole window of recent updates:
+ * those are the leaks that take a node down over days.
+ * For a few orphans per class it keeps weak references, and for every suspect it records the reference path that
+ * keeps one of them alive, starting at its VaadinSession (the HTTP session holding it is the way to a GC root that
+ * is visible without a heap dump). Memory use is bounded by the number of classes, samples and path steps.
+ */
+public class OrphanLeakDetector {
+
+    private static final Logger logger = Logger.getLogger(OrphanLeakDetector.class.getName());
+
+    private static final int MAX_CLASSES = 256;
+    private static final int SAMPLES_PER_CLASS = 4;
+    private static final int MAX_PATH_LENGTH = 32;
+
+    public interface Suspect {
+        String getClassName();
+        long[] getOrphanCounts(); // oldest first, one per update in the window
+        List<String> getReferencePath(); // class names from the VaadinSession to a sampled orphan, empty if none was alive
+    }
+
+    private static final class OrphanSample {
+        private final WeakReference<VaadinSession> session;
+        private final WeakReference<Component> orphan;
+
+        OrphanSample(VaadinSession session, Component orphan) {
+            this.session = new WeakReference<>(session);
+            this.orphan = new WeakReference<>(orphan);
+        }
+    }
+
+    private final class Track implements Suspect {
+        private final String className;
+        private final long[] counts = new long[window]; // ring buffer
+        private int numCounts;
+        private int next;
+        private final List<OrphanSample> samples = new ArrayList<>(SAMPLES_PER_CLASS);
+        private boolean suspect;
+        private List<String> referencePath = Collections.emptyList();
+
+        Track(String className) {
+            this.className = className;
+        }
+
+        void addCount(long count) {
+            counts[next] = count;
+            next = (next + 1) % counts.length;
+            numCounts = Math.min(numCounts + 1, counts.length);
+        }
+
+        boolean isGrowing() {
+            if (numCounts < counts.length) {
+                return false;
+            }
+            long[] history = getOrphanCounts();
+            for (int i = 1; i < history.length; i++) {
+                if (history[i] < history[i - 1]) {
+                    return false;
+                }
+            }
+            return history[history.length - 1] > history[0];
+        }
+
+        boolean isIdle() {
+            for (int i = 0; i < numCounts; i++) {
+                if (counts[i] > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public long[] getOrphanCounts() {
+            long[] retVal = new long[numCounts];
+            for (int i = 0; i < numCounts; i++) {
+                retVal[i] = counts[(next - numCounts + i + counts.length) % counts.length];
+            }
+            return retVal;
+        }
+
+        @Override
+        public List<String> getReferencePath() {
+            return referencePath;
+        }
+    }
+
+    private final int window;
+    private final Map<String, Track> tracks = new HashMap<>();
+
+    /**
+     * @param window the number of updates the orphan count of a class has to grow over before it is suspected
+     */
+    public OrphanLeakDetector(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("Window must be at least 2 updates, was " + window);
+        }
+        this.window = window;
+    }
+
+    /**
+     * Offers an orphan found while measuring the session; a few per class are kept, weakly.
+     */
+    synchronized void sample(VaadinSession session, Component orphan) {
+        Track track = getTrack(orphan.getClass().getName());
+        if (track == null) {
+            return;
+        }
+        track.samples.removeIf(sample -> sample.orphan.get() == null);
+        if (track.samples.size() < SAMPLES_PER_CLASS) {
+            track.samples.add(new OrphanSample(session, orphan));
+        }
+    }
+
+    /**
+     * Records the orphan counts of all tracked sessions as of one tracker update, and updates the suspects.
+     */
+    synchronized void analyze(List<SessionFootprintTracker.SessionFootprint> footprints) {
+        Map<String, Long> counts = new HashMap<>();
+        for (SessionFootprintTracker.SessionFootprint footprint : footprints) {
+            footprint.getOrphanedComponentCounts().forEach((className, count) -> counts.merge(className, (long) count, Long::sum));
+        }
+        counts.keySet().forEach(this::getTrack);
+
+        Iterator<Track> iterator = tracks.values().iterator();
+        while (iterator.hasNext()) {
+            Track track = iterator.next();
+            track.addCount(counts.getOrDefault(track.className, 0L));
+            if (track.isIdle()) {
+                iterator.remove();
+                continue;
+            }
+            boolean growing = track.isGrowing();
+            if (growing && !track.suspect) {
+                track.referencePath = capturePath(track.samples);
+                logger.log(Level.WARNING, "Orphaned " + track.className + " components keep growing: " + Arrays.toString(track.getOrphanCounts())
+                        + (track.referencePath.isEmpty() ? "" : ", held by " + String.join(" -> ", track.referencePath)) + ".");
+            }
+            track.suspect = growing;
+        }
+    }
+
+    /**
+     * @return the classes whose orphan count grew over the whole window, most orphans first.
+     */
+    public synchronized List<Suspect> getSuspects() {
+        List<Suspect> retVal = new ArrayList<>();
+        for (Track track : tracks.values()) {
+            if (track.suspect) {
+                retVal.add(track);
+            }
+        }
+        retVal.sort(Comparator.comparingLong((Suspect suspect) -> {
+            long[] counts = suspect.getOrphanCounts();
+            return counts[counts.length - 1];
+        }).reversed());
+        return retVal;
+    }
+
+    private Track getTrack(String className) {
+        Track track = tracks.get(className);
+        if (track == null && tracks.size() < MAX_CLASSES) {
+            track = new Track(className);
+            tracks.put(className, track);
+        }
+        return track;
+    }
+
+    private static List<String> capturePath(List<OrphanSample> samples) {
+        for (OrphanSample sample : samples) {
+            VaadinSession session = sample.session.get();
+            Component orphan = sample.orphan.get();
+            if (session == null || orphan == null) {
+                continue;
+            }
+            ObjectGraph graph = ObjectGraph.capture(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION),
+                    SizeOfEngine.getActive().newInstance(new PassThroughFilter()));
+            int node = graph.idOf(orphan);
+            if (node < 0) {
+                continue;
+            }
+            int[] path = graph.pathTo(node);
+            List<String> retVal = new ArrayList<>(Math.min(path.length, MAX_PATH_LENGTH) + 1);
+            for (int i = 0; i < path.length; i++) {
+                if (path.length > MAX_PATH_LENGTH && i == MAX_PATH_LENGTH / 2) {
+                    retVal.add("...");
+                    i = path.length - MAX_PATH_LENGTH / 2; // keep both ends
+                }
+                retVal.add(graph.objects[path[i]].getClass().getName());
+            }
+            return Collections.unmodifiableList(retVal);
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.ehcache.sizeof.impl.PassThroughFilter;
+
+import java.util.*;
+
+import static com.example.application.profiling.ObjDescription.getDescription;
+
+/**
+ * Retained sizes of VaadinSessions, UIs and views (route target components): how many bytes would be freed if the
+ * object were discarded. Unlike the deep sizes of SizeOfCalculator these do not double-count shared objects,
+ * an object shared by two sessions is retained by whatever dominates both of them.
+ */
+public class RetainedSizeCalculator {
+
+    public enum Kind {
+        SESSION,
+        UI,
+        VIEW
+    }
+
+    public interface RetainedSize {
+        Kind getKind();
+        String getDescription();
+        long getRetainedSize();
+    }
+
+    public interface RetainedSizes {
+        long getTotalSize(); // retained size of the root, i.e. everything reachable from it
+        int getNumberOfObjects();
+        List<RetainedSize> getRetainedSizes(Kind kind); // largest first
+    }
+
+    private static class Retained implements RetainedSize {
+        private final Kind kind;
+        private final String desc;
+        private final long retainedSize;
+
+        Retained(Kind kind, String desc, long retainedSize) {
+            this.kind = kind;
+            this.desc = desc;
+            this.retainedSize = retainedSize;
+        }
+
+        @Override
+        public Kind getKind() {
+            return kind;
+        }
+
+        @Override
+        public String getDescription() {
+            return desc;
+        }
+
+        @Override
+        public long getRetainedSize() {
+            return retainedSize;
+        }
+    }
+
+    private RetainedSizeCalculator() {
+    }
+
+    /**
+     * Retained sizes below the VaadinService and the given sessions, without the servlet container, the Spring
+     * context and the class loaders around them: the graph of everything reachable from the service would be a
+     * multiple of what the sessions hold. Meant to run off the request threads, e.g. through AsyncMeasurement; stops
+     * with a CancellationException once the progress is cancelled.
+     *
+     * @param sessions the sessions of the service, e.g. as known to the {@link SessionFootprintTracker}
+     */
+    public static RetainedSizes calculateRetainedSizesOf(VaadinService service, Collection<VaadinSession> sessions, MeasurementProgress progress) {
+        // the sessions are only reachable from the service through the container, so they are roots of their own
+        List<Object> roots = new ArrayList<>(sessions.size() + 1);
+        roots.add(service);
+        roots.addAll(sessions);
+        return calc(roots.toArray(), new VaadinScopeFilter(VaadinScopeFilter.Scope.NODE), progress);
+    }
+
+    public static RetainedSizes calculateRetainedSizesOf(VaadinSession session) {
+        return calc(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION), null);
+    }
+
+    public static RetainedSizes calculateRetainedSizesOf(UI ui) {
+        return calc(ui, new VaadinScopeFilter(VaadinScopeFilter.Scope.UI), null);
+    }
+
+    private static RetainedSizes calc(Object rootRef, SizeOfFilter sizeOfFilter, MeasurementProgress progress) {
+        final ObjectGraph graph = ObjectGraph.capture(rootRef, sizeOfFilter, SizeOfEngine.getActive().newInstance(new PassThroughFilter()), progress);
+        final DominatorTree dominatorTree = new DominatorTree(graph);
+
+        final EnumMap<Kind, List<RetainedSize>> retainedSizes = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            retainedSizes.put(kind, new ArrayList<>());
+        }
+        for (int node = 0; node < graph.size(); node++) {
+            Kind kind = kindOf(graph.objects[node]);
+            if (kind != null) {
+                retainedSizes.get(kind).add(new Retained(kind, getDescription(graph.objects[node]), dominatorTree.getRetainedSize(node)));
+            }
+        }
+        for (List<RetainedSize> list : retainedSizes.values()) {
+            list.sort(Comparator.comparingLong(RetainedSize::getRetainedSize).reversed());
+        }
+
+        final long totalSize = dominatorTree.getRetainedSize(0);
+        final int numObjects = graph.size();
+        return new RetainedSizes() {
+            @Override
+            public long getTotalSize() {
+                return totalSize;
+            }
+
+            @Override
+            public int getNumberOfObjects() {
+                return numObjects;
+            }
+
+            @Override
+            public List<RetainedSize> getRetainedSizes(Kind kind) {
+                return Collections.unmodifiableList(retainedSizes.get(kind));
+            }
+        };
+    }
+
+    private static Kind kindOf(Object object) {
+        if (object instanceof VaadinSession) {
+            return Kind.SESSION;
+        }
+        if (object instanceof UI) {
+            return Kind.UI;
+        }
+        if (object instanceof Component) {
+            for (Class<?> clazz = object.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+                if (clazz.isAnnotationPresent(Route.class)) {
+                    return Kind.VIEW;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.server.WrappedSession;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.example.application.profiling.ObjDescription.getDescription;
+
+/**
+ * Enforces a per-session byte budget on the deep sizes measured by the FootprintSampler, so one heavy user cannot
+ * push a shared node into full GCs. A session over budget is warned about, has the configured attributes evicted,
+ * or is closed, depending on the policy. Actions run with the session locked, via VaadinSession.access.
+ * A footprint stays cached until its session is re-measured, so a session is only acted on once per measurement:
+ * the next action waits for a footprint measured after the last one.
+ */
+public class SessionBudget implements FootprintSampler.SampleListener {
+
+    private static final Logger logger = Logger.getLogger(SessionBudget.class.getName());
+
+    public enum Policy {
+        WARN,
+        EVICT_ATTRIBUTES,
+        CLOSE
+    }
+
+    private final SessionFootprintTracker tracker;
+    private final long maxBytes;
+    private final Policy policy;
+    private final List<String> evictedAttributes;
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final Map<WeakIdentityKey<VaadinSession>, Long> actedOn = new HashMap<>(); // measured at millis, on the sampler thread only
+
+    /**
+     * @param evictedAttributes the names of the attributes removed from a session over budget with Policy.EVICT_ATTRIBUTES
+     */
+    public SessionBudget(SessionFootprintTracker tracker, long maxBytes, Policy policy, Collection<String> evictedAttributes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Budget must be positive, was " + maxBytes);
+        }
+        this.tracker = tracker;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.evictedAttributes = new ArrayList<>(evictedAttributes);
+    }
+
+    @Override
+    public void sampled(FootprintHistory.Sample sample, SessionFootprintTracker.FootprintReport report) {
+        expungeCollected();
+        Map<String, SessionFootprintTracker.SessionFootprint> overBudget = new HashMap<>();
+        for (SessionFootprintTracker.SessionFootprint footprint : report.getSessionFootprints()) {
+            if (footprint.getDeepSize() > maxBytes) {
+                overBudget.put(footprint.getSessionDescription(), footprint);
+            }
+        }
+        for (VaadinSession session : tracker.getSessions()) {
+            SessionFootprintTracker.SessionFootprint footprint = overBudget.get(getDescription(session));
+            if (footprint == null) {
+                actedOn.remove(new WeakIdentityKey<>(session, null)); // back within budget
+                continue;
+            }
+            Long actedOnMeasurement = actedOn.get(new WeakIdentityKey<>(session, null));
+            if (actedOnMeasurement == null || footprint.getMeasuredAtMillis() > actedOnMeasurement) {
+                actedOn.put(new WeakIdentityKey<>(session, collected), footprint.getMeasuredAtMillis());
+                enforce(session, footprint.getDeepSize());
+            }
+        }
+    }
+
+    private void expungeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            actedOn.remove(reference);
+        }
+    }
+
+    private void enforce(VaadinSession session, long deepSize) {
+        final String sessionDesc = getDescription(session);
+        logger.log(Level.WARNING, "Session " + sessionDesc + " uses " + deepSize + " bytes, over its budget of " + maxBytes + ", policy " + policy + ".");
+        switch (policy) {
+            case EVICT_ATTRIBUTES:
+                session.access(() -> {
+                    for (String attribute : evictedAttributes) {
+                        if (session.getAttribute(attribute) != null) {
+                            session.setAttribute(attribute, null);
+                            logger.log(Level.INFO, "Evicted attribute " + attribute + " of session " + sessionDesc + ".");
+                        }
+                    }
+                });
+                tracker.markDirty(session);
+                break;
+            case CLOSE:
+                session.access(() -> {
+                    // the same as the Close Session button
+                    WrappedSession wrappedSession = session.getSession();
+                    if (wrappedSession != null) {
+                        wrappedSession.invalidate();
+                    }
+                    session.close();
+                    logger.log(Level.INFO, "Closed session " + sessionDesc + ".");
+                });
+                break;
+            default:
+                break;
+        }
+    }
+}
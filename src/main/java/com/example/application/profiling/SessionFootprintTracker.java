@@ -0,0 +1,313 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.example.application.profiling.ObjDescription.getDescription;
+
+/**
+ * Keeps a per-session footprint index for one VaadinService. Sessions are registered and marked dirty from the
+ * session and UI lifecycle listeners and on every request (see ApplicationServiceInitListener); {@link #update()}
+ * then re-measures only the dirty sessions instead of crawling the whole service. A session is marked when its
+ * request starts, so a pass running during the request may miss what the request adds; footprints older than the
+ * maximum age are therefore re-measured anyway.
+ */
+public class SessionFootprintTracker {
+
+    Logger logger = Logger.getLogger(SessionFootprintTracker.class.getName());
+
+    public interface SessionFootprint {
+        String getSessionDescription();
+        long getDeepSize();
+        int getNumberOfUIs();
+        int getNumberOfComponents();
+        int getNumberOfOrphanedComponents();
+        Map<String, Integer> getOrphanedComponentCounts(); // by class name
+        Map<String, Integer> getUIComponentCounts();
+        Map<String, Long> getUIDeepSizes();
+        ClassHistogram getClassHistogram(); // shallow bytes per class matched by the tracker's ClassMatcher
+        long getMeasuredAtMillis();
+    }
+
+    public interface FootprintReport {
+        long getTotalDeepSize();
+        ClassHistogram getClassHistogram(); // over all sessions
+        int getNumberOfRemeasuredSessions();
+        long getUpdateDurationNanos();
+        List<SessionFootprint> getSessionFootprints();
+    }
+
+    private static class Entry {
+        private volatile boolean dirty = true;
+        private volatile SessionFootprint footprint;
+        private final Set<UI> uis = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    }
+
+    private static class Footprint implements SessionFootprint {
+        private final String sessionDesc;
+        private final long deepSize;
+        private final int numUIs;
+        private final int numComponents;
+        private final int numOrphans;
+        private final Map<String, Integer> orphanCounts;
+        private final Map<String, Integer> uiComponentCounts;
+        private final Map<String, Long> uiDeepSizes;
+        private final ClassHistogram classHistogram;
+        private final long measuredAt;
+
+        Footprint(String sessionDesc, long deepSize, int numUIs, int numComponents, int numOrphans, Map<String, Integer> orphanCounts,
+                  Map<String, Integer> uiComponentCounts, Map<String, Long> uiDeepSizes, ClassHistogram classHistogram, long measuredAt) {
+            this.sessionDesc = sessionDesc;
+            this.deepSize = deepSize;
+            this.numUIs = numUIs;
+            this.numComponents = numComponents;
+            this.numOrphans = numOrphans;
+            this.orphanCounts = orphanCounts;
+            this.uiComponentCounts = uiComponentCounts;
+            this.uiDeepSizes = uiDeepSizes;
+            this.classHistogram = classHistogram;
+            this.measuredAt = measuredAt;
+        }
+
+        @Override
+        public String getSessionDescription() {
+            return sessionDesc;
+        }
+
+        @Override
+        public long getDeepSize() {
+            return deepSize;
+        }
+
+        @Override
+        public int getNumberOfUIs() {
+            return numUIs;
+        }
+
+        @Override
+        public int getNumberOfComponents() {
+            return numComponents;
+        }
+
+        @Override
+        public int getNumberOfOrphanedComponents() {
+            return numOrphans;
+        }
+
+        @Override
+        public Map<String, Integer> getOrphanedComponentCounts() {
+            return orphanCounts;
+        }
+
+        @Override
+        public Map<String, Integer> getUIComponentCounts() {
+            return uiComponentCounts;
+        }
+
+        @Override
+        public Map<String, Long> getUIDeepSizes() {
+            return uiDeepSizes;
+        }
+
+        @Override
+        public ClassHistogram getClassHistogram() {
+            return classHistogram;
+        }
+
+        @Override
+        public long getMeasuredAtMillis() {
+            return measuredAt;
+        }
+    }
+
+    private static final ClassMatcher DEFAULT_CLASSES = ClassMatcher.ofPrefixes("com.example.application", "com.vaadin.flow.component");
+    private static final long DEFAULT_MAX_FOOTPRINT_AGE_MILLIS = 10 * 60 * 1000;
+
+    // weak keys: a session that is never destroyed properly must not be kept alive by the profiler
+    private final Map<VaadinSession, Entry> index = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ClassMatcher classMatcher;
+    private final OrphanLeakDetector orphanLeakDetector = new OrphanLeakDetector(5);
+    private volatile long maxFootprintAgeMillis = DEFAULT_MAX_FOOTPRINT_AGE_MILLIS;
+
+    public SessionFootprintTracker() {
+        this(DEFAULT_CLASSES);
+    }
+
+    public SessionFootprintTracker(ClassMatcher classMatcher) {
+        this.classMatcher = classMatcher;
+    }
+
+    /**
+     * @return the tracker of the given service, created on first use.
+     */
+    public static SessionFootprintTracker get(VaadinService service) {
+        return service.getContext().getAttribute(SessionFootprintTracker.class, SessionFootprintTracker::new);
+    }
+
+    /**
+     * @return the detector following the orphaned components across the updates of this tracker.
+     */
+    public OrphanLeakDetector getOrphanLeakDetector() {
+        return orphanLeakDetector;
+    }
+
+    /**
+     * Sets how old a footprint may get before {@link #update()} re-measures it although its session is not dirty;
+     * 10 minutes unless set.
+     */
+    public void setMaxFootprintAgeMillis(long maxFootprintAgeMillis) {
+        this.maxFootprintAgeMillis = maxFootprintAgeMillis;
+    }
+
+    public void register(VaadinSession session) {
+        index.putIfAbsent(session, new Entry());
+    }
+
+    public void unregister(VaadinSession session) {
+        index.remove(session);
+    }
+
+    /**
+     * Registers the UI with its session, so that it gets its own deep size, and marks the session dirty.
+     */
+    public void registerUI(UI ui) {
+        Entry entry = index.computeIfAbsent(ui.getSession(), k -> new Entry());
+        entry.uis.add(ui);
+        entry.dirty = true;
+    }
+
+    public void unregisterUI(VaadinSession session, UI ui) {
+        Entry entry = index.get(session);
+        if (entry != null) {
+            entry.uis.remove(ui);
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * Marks the session for re-measurement in the next {@link #update()}. Unknown sessions are registered.
+     */
+    public void markDirty(VaadinSession session) {
+        if (session == null) {
+            return;
+        }
+        Entry entry = index.get(session);
+        if (entry == null) {
+            register(session);
+        }
+        else {
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * @return the currently tracked sessions.
+     */
+    public List<VaadinSession> getSessions() {
+        synchronized (index) {
+            return new ArrayList<>(index.keySet());
+        }
+    }
+
+    /**
+     * Re-measures all sessions marked dirty since the last pass, or measured longer than the maximum age ago, and
+     * returns the footprints of all tracked sessions.
+     */
+    public synchronized FootprintReport update() {
+        final long start = System.nanoTime();
+        final long measuredBefore = System.currentTimeMillis() - maxFootprintAgeMillis;
+
+        Map<VaadinSession, Entry> snapshot;
+        synchronized (index) {
+            snapshot = new IdentityHashMap<>(index);
+        }
+
+        int remeasured = 0;
+        long total = 0;
+        ClassHistogram classHistogram = new ClassHistogram();
+        List<SessionFootprint> footprints = new ArrayList<>(snapshot.size());
+        for (Map.Entry<VaadinSession, Entry> e : snapshot.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.dirty || entry.footprint == null || entry.footprint.getMeasuredAtMillis() < measuredBefore) {
+                entry.dirty = false; // changes made while we measure mark the session dirty again
+                entry.footprint = measure(e.getKey(), entry);
+                remeasured++;
+            }
+            footprints.add(entry.footprint);
+            total += entry.footprint.getDeepSize();
+            classHistogram.merge(entry.footprint.getClassHistogram());
+        }
+        footprints.sort(Comparator.comparingLong(SessionFootprint::getDeepSize).reversed());
+        orphanLeakDetector.analyze(footprints);
+
+        final long duration = System.nanoTime() - start;
+        final int numRemeasured = remeasured;
+        logger.log(Level.FINE, () -> "Re-measured " + numRemeasured + " of " + snapshot.size() + " session(s) in " + duration / 1_000_000 + " ms.");
+
+        final long totalDeepSize = total;
+        final List<SessionFootprint> sessionFootprints = Collections.unmodifiableList(footprints);
+        return new FootprintReport() {
+            @Override
+            public long getTotalDeepSize() {
+                return totalDeepSize;
+            }
+
+            @Override
+            public ClassHistogram getClassHistogram() {
+                return classHistogram;
+            }
+
+            @Override
+            public int getNumberOfRemeasuredSessions() {
+                return numRemeasured;
+            }
+
+            @Override
+            public long getUpdateDurationNanos() {
+                return duration;
+            }
+
+            @Override
+            public List<SessionFootprint> getSessionFootprints() {
+                return sessionFootprints;
+            }
+        };
+    }
+
+    private SessionFootprint measure(VaadinSession session, Entry entry) {
+        SizeOfCalculator.DeepSize deepSize = SizeOfCalculator.calculateSizesOf(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION),
+                SizeOfCalculator.StatisticsMode.AGGREGATE, classMatcher, orphan -> orphanLeakDetector.sample(session, orphan));
+        VaadinVisitor.VaadinStatistics vaadinStatistics = deepSize.getVaadinStatistics();
+
+        final String sessionDesc = getDescription(session);
+        int sessionIndex = vaadinStatistics.indexOf(session);
+        int numUIs = (sessionIndex < 0 ? 0 : vaadinStatistics.getNumberOfUIs(sessionIndex));
+        int numComponents = 0;
+        Map<String, Integer> uiComponentCounts = new HashMap<>();
+        for (int ui = (sessionIndex < 0 ? 0 : vaadinStatistics.getFirstUI(sessionIndex)), end = ui + numUIs; ui < end; ui++) {
+            int numUIComponents = vaadinStatistics.getNumberOfComponents(ui);
+            uiComponentCounts.put(vaadinStatistics.getUIDescription(ui), numUIComponents);
+            numComponents += numUIComponents;
+        }
+
+        List<UI> registeredUIs;
+        synchronized (entry.uis) {
+            registeredUIs = new ArrayList<>(entry.uis);
+        }
+        Map<String, Long> uiDeepSizes = new HashMap<>();
+        for (UI ui : registeredUIs) {
+            uiDeepSizes.put(getDescription(ui), SizeOfCalculator.calculateSizesOf(ui).getDeepSize());
+        }
+
+        return new Footprint(sessionDesc, deepSize.getDeepSize(), numUIs, numComponents, vaadinStatistics.getNumberOfOrphanedComponents(),
+                Collections.unmodifiableMap(vaadinStatistics.getOrphanedComponentCounts()),
+                Collections.unmodifiableMap(uiComponentCounts), Collections.unmodifiableMap(uiDeepSizes),
+                deepSize.getClassHistogram(), System.currentTimeMillis());
+    }
+}
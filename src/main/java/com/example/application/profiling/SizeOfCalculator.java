@@ -2,6 +2,7 @@ package com.example.application.profiling;
 
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.VaadinService;
 import com.vaadin.flow.server.VaadinSession;
 import org.ehcache.sizeof.SizeOf;
 import org.ehcache.sizeof.VisitorListener;
@@ -9,32 +10,50 @@ import org.ehcache.sizeof.filters.SizeOfFilter;
 import org.ehcache.sizeof.impl.PassThroughFilter;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static com.example.application.profiling.ObjDescription.getDescription;
-
 public class SizeOfCalculator {
 
     private final Object rootRef;
-    private final String[] prefixes;
+    private final ClassMatcher classMatcher;
     private final VaadinVisitor vaadinVisitor;
     private final FilteringVisitorListener filteringVisitorListener;
+    private final ConcurrentIdentitySet claimedObjects; // shared between parallel calculators, null otherwise
+    private final StatisticsMode statisticsMode;
+    private MeasurementProgress progress; // set for parallel measurements only, null otherwise
 
-    private final HashMap<String, List<InstanceStatistics>> classnameToInstanceSizes = new HashMap<>();
+    private final ClassHistogram classHistogram = new ClassHistogram();
+    private final IdentityHashMap<Class<?>, Instances> classToInstanceSizes = new IdentityHashMap<>();
+    private final int instancesPerClass;
 
     private final SizeOf sizeOf;
 
-    private SizeOfCalculator(Object rootRef, SizeOfFilter sizeOfFilter, String... fullyQualifiedClassnamePrefixes) {
+    private SizeOfCalculator(Object rootRef, SizeOfFilter sizeOfFilter, ConcurrentIdentitySet claimedObjects, StatisticsMode statisticsMode, ClassMatcher classMatcher) {
+        this(rootRef, sizeOfFilter, claimedObjects, statisticsMode, classMatcher, DEFAULT_LARGEST_ARRAYS);
+    }
+
+    private SizeOfCalculator(Object rootRef, SizeOfFilter sizeOfFilter, ConcurrentIdentitySet claimedObjects, StatisticsMode statisticsMode, ClassMatcher classMatcher, int largestArrays) {
+        if (statisticsMode == StatisticsMode.LARGEST_ARRAYS && largestArrays < 1) {
+            throw new IllegalArgumentException("Number of largest arrays must be positive, was " + largestArrays);
+        }
         this.rootRef = rootRef;
-        this.prefixes = fullyQualifiedClassnamePrefixes;
+        this.classMatcher = classMatcher;
         this.vaadinVisitor = new VaadinVisitor();
         this.filteringVisitorListener = new FilteringVisitorListener();
+        this.claimedObjects = claimedObjects;
+        this.statisticsMode = statisticsMode;
+        this.instancesPerClass = (statisticsMode == StatisticsMode.LARGEST_ARRAYS ? largestArrays : Integer.MAX_VALUE);
 
-        this.sizeOf = SizeOf.newInstance(true, true, sizeOfFilter);
-        //this.sizeOf = new AgentSizeOf(sizeOfFilter, true, true); // filters can be passed here
-        //this.sizeOf = new UnsafeSizeOf(sizeOfFilter, true, true); // filters can be passed here
-        //this.sizeOf = new ReflectionSizeOf(sizeOfFilter, true, true); // filters can be passed here
+        this.sizeOf = SizeOfEngine.getActive().newInstance(sizeOfFilter); // Agent, Unsafe or Reflection, see SizeOfEngine
+    }
+
+    private SizeOfCalculator(Object rootRef, SizeOfFilter sizeOfFilter, String... fullyQualifiedClassnamePrefixes) {
+        this(rootRef, sizeOfFilter, null, StatisticsMode.INSTANCES, ClassMatcher.ofPrefixes(fullyQualifiedClassnamePrefixes));
     }
 
     private SizeOfCalculator(Object rootRef, String... fullyQualifiedClassnamePrefixes) {
@@ -43,27 +62,117 @@ public class SizeOfCalculator {
 
     Logger logger = Logger.getLogger(SizeOfCalculator.class.getName());
 
+    /**
+     * INSTANCES keeps a description of every matching instance; LARGEST_ARRAYS only the largest few instances of each
+     * matching array class, so its memory use does not grow with the number of instances; AGGREGATE only counts
+     * instances and bytes per class, which does not allocate per visited object.
+     * LARGEST_ARRAYS ranks by shallow size, the only size a crawl knows per instance. It varies by length for arrays
+     * but is the same for all instances of any other class, so other classes are only counted, as in AGGREGATE.
+     * Array class names start with "[", so the prefix "[" matches all of them.
+     */
+    public enum StatisticsMode {
+        INSTANCES,
+        LARGEST_ARRAYS,
+        AGGREGATE
+    }
+
+    /**
+     * The number of instances per array class kept in StatisticsMode.LARGEST_ARRAYS unless given otherwise.
+     */
+    public static final int DEFAULT_LARGEST_ARRAYS = 10;
+
     public interface InstanceStatistics {
         String getDescription();
+        long getShallowSize();
     }
 
     public interface ClassStatistics extends Comparable<ClassStatistics> {
         String getClassName();
-        InstanceStatistics[] getInstanceStatistics();
+        long getInstanceCount();
+        long getTotalBytes(); // sum of the shallow sizes of the instances
+        InstanceStatistics[] getInstanceStatistics(); // in crawl order; largest first, then in crawl order, in StatisticsMode.LARGEST_ARRAYS (empty for non-array classes); empty in StatisticsMode.AGGREGATE
     }
 
     public interface DeepSize {
         long getDeepSize();
         ClassStatistics[] getClassStatistics();
+        ClassStatistics[] getTopClassStatistics(int n);
+        ClassHistogram getClassHistogram();
         VaadinVisitor.VaadinStatistics getVaadinStatistics();
     }
 
+    /**
+     * An extrapolated value with its 95% confidence interval.
+     */
+    public interface Estimate {
+        double getValue();
+        double getLow();
+        double getHigh();
+    }
+
+    public interface ApproximateDeepSize {
+        Estimate getDeepSize();
+        int getNumberOfSessions();
+        int getNumberOfSampledSessions();
+        Map<String, Estimate> getClassCounts(); // by class name
+        Map<String, Estimate> getClassBytes(); // by class name
+    }
+
+    /**
+     * Sums of a per-session value over the sampled sessions, extrapolated to all sessions: the estimate of the total
+     * is N times the sample mean, its standard error N * s / sqrt(n) * sqrt(1 - n/N) with the finite population correction, so it
+     * shrinks to zero once every session is sampled.
+     */
+    static class Accumulator {
+        private double sum;
+        private double sumOfSquares;
+
+        void add(double value) {
+            sum += value;
+            sumOfSquares += value * value;
+        }
+
+        Estimate extrapolate(double exact, int numSampled, int numSessions) {
+            if (numSampled == 0) {
+                return estimate(exact, 0);
+            }
+            double mean = sum / numSampled;
+            double variance = (numSampled > 1 ? Math.max(0, (sumOfSquares - numSampled * mean * mean) / (numSampled - 1)) : 0);
+            double correction = 1 - (double) numSampled / numSessions;
+            double standardError = numSessions * Math.sqrt(variance / numSampled * correction);
+            return estimate(exact + numSessions * mean, 1.96 * standardError);
+        }
+
+        private static Estimate estimate(final double value, final double margin) {
+            return new Estimate() {
+                @Override
+                public double getValue() {
+                    return value;
+                }
+
+                @Override
+                public double getLow() {
+                    return Math.max(0, value - margin);
+                }
+
+                @Override
+                public double getHigh() {
+                    return value + margin;
+                }
+            };
+        }
+    }
+
     private static class ClsSize implements ClassStatistics {
         private final String className;
+        private final long instanceCount;
+        private final long totalBytes;
         private final InstanceStatistics[] objectInstanceSizes;
 
-        ClsSize(String className, InstanceStatistics[] objectInstanceSizes) {
+        ClsSize(String className, long instanceCount, long totalBytes, InstanceStatistics[] objectInstanceSizes) {
             this.className = className;
+            this.instanceCount = instanceCount;
+            this.totalBytes = totalBytes;
             this.objectInstanceSizes = objectInstanceSizes;
         }
 
@@ -72,6 +181,16 @@ public class SizeOfCalculator {
             return this.className;
         }
 
+        @Override
+        public long getInstanceCount() {
+            return instanceCount;
+        }
+
+        @Override
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
         @Override
         public InstanceStatistics[] getInstanceStatistics() {
             return objectInstanceSizes;
@@ -79,47 +198,133 @@ public class SizeOfCalculator {
 
         @Override
         public int compareTo(ClassStatistics o) {
-            return Long.compare(this.getInstanceStatistics().length, o.getInstanceStatistics().length);
+            return Long.compare(this.getInstanceCount(), o.getInstanceCount());
         }
     }
 
+    /**
+     * The n-th instance of its class in a crawl; the description is only rendered when asked for.
+     */
     private static class ObjStatistics implements InstanceStatistics {
-        private final String desc;
-
-        ObjStatistics(String description) {
-            this.desc = description;
+        private final Class<?> clazz;
+        private final long sequence;
+        private final long shallowSize;
+
+        ObjStatistics(Class<?> clazz, long sequence, long shallowSize) {
+            this.clazz = clazz;
+            this.sequence = sequence;
+            this.shallowSize = shallowSize;
         }
 
         @Override
         public String getDescription() {
-            return desc;
+            return ObjDescription.getCrawlDescription(clazz, sequence);
+        }
+
+        @Override
+        public long getShallowSize() {
+            return shallowSize;
+        }
+    }
+
+    /**
+     * Smaller shallow size first, and of equal ones the later crawled first, so that is the one a full heap evicts.
+     */
+    private static final Comparator<ObjStatistics> BY_SHALLOW_SIZE = Comparator.comparingLong(ObjStatistics::getShallowSize)
+            .thenComparing(Comparator.comparingLong((ObjStatistics instance) -> instance.sequence).reversed());
+
+    /**
+     * The instances of one class: all of them, in crawl order, or only the largest ones, in a min-heap so a smaller
+     * instance is turned away without allocating anything. Ties go to the instance crawled first, so the result does
+     * not depend on the order of equal instances in the heap.
+     */
+    private static class Instances {
+        private final int limit;
+        private final List<ObjStatistics> all;
+        private final PriorityQueue<ObjStatistics> largest;
+
+        Instances(int limit) {
+            this.limit = limit;
+            this.all = (limit == Integer.MAX_VALUE ? new ArrayList<>() : null);
+            this.largest = (limit == Integer.MAX_VALUE ? null : new PriorityQueue<>(limit, BY_SHALLOW_SIZE));
+        }
+
+        void offer(Class<?> clazz, long sequence, long shallowSize) {
+            if (all != null) {
+                all.add(new ObjStatistics(clazz, sequence, shallowSize));
+            }
+            else if (largest.size() < limit) {
+                largest.add(new ObjStatistics(clazz, sequence, shallowSize));
+            }
+            else if (shallowSize > largest.peek().shallowSize || (shallowSize == largest.peek().shallowSize && sequence < largest.peek().sequence)) {
+                largest.poll();
+                largest.add(new ObjStatistics(clazz, sequence, shallowSize));
+            }
+        }
+
+        /**
+         * Adds the instances of another calculator of the same crawl, numbered after the ones it counted before.
+         */
+        void merge(Instances other, long offset) {
+            Collection<ObjStatistics> source = (other.all != null ? other.all : other.largest);
+            for (ObjStatistics instance : source) {
+                offer(instance.clazz, offset + instance.sequence, instance.shallowSize);
+            }
+        }
+
+        InstanceStatistics[] toArray() {
+            if (all != null) {
+                return all.toArray(new InstanceStatistics[0]);
+            }
+            ObjStatistics[] retVal = largest.toArray(new ObjStatistics[0]);
+            Arrays.sort(retVal, Collections.reverseOrder(BY_SHALLOW_SIZE));
+            return retVal;
         }
     }
 
 
     private class FilteringVisitorListener implements VisitorListener {
+        private long claimedSize;
+        private int numVisited;
+
         public void visited(Object object, long size) {
+            if (SizeOfCalculator.this.progress != null && (++numVisited & 0xFFF) == 0) {
+                SizeOfCalculator.this.progress.checkCancelled(); // the walker cannot be stopped any other way
+            }
+            if (SizeOfCalculator.this.claimedObjects != null) {
+                // a parallel sibling got there first: the walk itself cannot be pruned, but the object is counted only once
+                if (!SizeOfCalculator.this.claimedObjects.add(object)) {
+                    return;
+                }
+                claimedSize += size;
+            }
 
             SizeOfCalculator.this.vaadinVisitor.accept(object);
 
-            final String className = object.getClass().getName();
-            logger.log(Level.FINEST, "Testing an instance of class "+object.getClass().getName());
-            for (String prefix : SizeOfCalculator.this.prefixes) {
-                if (className.startsWith(prefix)) {
-                    // deep size is problematic as the internal BFS also crawls the graph 'upward' from a root object,
-                    // as that graph is not a tree in many cases.
-                    // This could maybe be fixed by applying a proper "SizeOfFilter" which needs to be experimentally
-                    // reached (must be so that e.g. a Vaadin UI would not be crawled upwards to its Vaadin Session,
-                    // in order to not read all the other Vaadin UIs, too -- assuming one would want to measure only
-                    // the size of one UI.
-                    // We leave the size out of the equation for now, and focus on the number of instances we can find instead.
-                    InstanceStatistics ois = new ObjStatistics(getDescription(object));
-                    List<InstanceStatistics> others = SizeOfCalculator.this.classnameToInstanceSizes.computeIfAbsent(className, k -> new ArrayList<>());
-                    others.add(ois);
-                    logger.log(Level.FINER, "Found an instance of class "+className);
-
-                    break;
+            final Class<?> clazz = object.getClass();
+            final String className = clazz.getName();
+            if (logger.isLoggable(Level.FINEST)) {
+                logger.log(Level.FINEST, "Testing an instance of class " + className);
+            }
+            if (SizeOfCalculator.this.classMatcher.matches(clazz)) {
+                // deep size is problematic as the internal BFS also crawls the graph 'upward' from a root object,
+                // as that graph is not a tree in many cases.
+                // calculateSizesOf(UI) and calculateSizesOf(VaadinSession) apply a VaadinScopeFilter that cuts
+                // the edges back to the VaadinService, the VaadinSession (for a UI) and thus to the sibling UIs.
+                // Per-instance deep sizes would still double-count shared objects, so we only sum up the shallow
+                // sizes per class here, and focus on the number of instances we can find instead.
+                if (SizeOfCalculator.this.statisticsMode == StatisticsMode.INSTANCES
+                        || (SizeOfCalculator.this.statisticsMode == StatisticsMode.LARGEST_ARRAYS && clazz.isArray())) {
+                    // numbered by the count of the class so far, so the descriptions need no per-crawl state
+                    long sequence = SizeOfCalculator.this.classHistogram.getCount(clazz);
+                    SizeOfCalculator.this.classToInstanceSizes.computeIfAbsent(clazz, k -> new Instances(SizeOfCalculator.this.instancesPerClass))
+                            .offer(clazz, sequence, size);
+                }
+                SizeOfCalculator.this.classHistogram.add(clazz, size);
+                if (logger.isLoggable(Level.FINER)) {
+                    logger.log(Level.FINER, "Found an instance of class " + className);
                 }
+
             }
         }
     }
@@ -134,19 +339,244 @@ public class SizeOfCalculator {
         return new SizeOfCalculator(rootRef, fullyQualifiedClassnamePrefixes).calc();
     }
 
-    private DeepSize calc() {
-        final long deepSize = sizeOf.deepSizeOf(filteringVisitorListener, this.rootRef);
+    /**
+     * Measures only the given UI: the VaadinService, the owning VaadinSession and therefore the sibling UIs are not crawled.
+     */
+    public static DeepSize calculateSizesOf(UI ui, String... fullyQualifiedClassnamePrefixes) {
+        return calculateSizesOf(ui, new VaadinScopeFilter(VaadinScopeFilter.Scope.UI), fullyQualifiedClassnamePrefixes);
+    }
 
-        ArrayList<ClassStatistics> classStatistics = new ArrayList<>();
-        classnameToInstanceSizes.forEach((className, objectInstanceSizes) -> {
-            ClassStatistics cts = new ClsSize(className, objectInstanceSizes.toArray(new InstanceStatistics[0]));
-            classStatistics.add(cts);
-        });
+    /**
+     * Measures only the given VaadinSession with its attributes and UIs, not the VaadinService or other sessions.
+     */
+    public static DeepSize calculateSizesOf(VaadinSession session, String... fullyQualifiedClassnamePrefixes) {
+        return calculateSizesOf(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION), fullyQualifiedClassnamePrefixes);
+    }
 
-        Collections.sort(classStatistics);
-        Collections.reverse(classStatistics);
+    /**
+     * Like {@link #calculateSizesOf(Object, String...)}, but in StatisticsMode.AGGREGATE no per-instance descriptions
+     * are collected; use {@link DeepSize#getTopClassStatistics(int)} to get the largest classes.
+     */
+    public static DeepSize calculateSizesOf(Object rootRef, StatisticsMode statisticsMode, String... fullyQualifiedClassnamePrefixes) {
+        return calculateSizesOf(rootRef, statisticsMode, ClassMatcher.ofPrefixes(fullyQualifiedClassnamePrefixes));
+    }
 
-        final ClassStatistics[] classStats = classStatistics.toArray(new ClassStatistics[0]);
+    /**
+     * Like {@link #calculateSizesOf(Object, StatisticsMode, String...)}, with include/exclude patterns instead of prefixes.
+     */
+    public static DeepSize calculateSizesOf(Object rootRef, StatisticsMode statisticsMode, ClassMatcher classMatcher) {
+        return new SizeOfCalculator(rootRef, new PassThroughFilter(), null, statisticsMode, classMatcher).calc();
+    }
+
+    /**
+     * Like {@link #calculateSizesOf(Object, StatisticsMode, ClassMatcher)} in StatisticsMode.LARGEST_ARRAYS, keeping
+     * the given number of instances per array class, by shallow size.
+     */
+    public static DeepSize calculateSizesOf(Object rootRef, int largestArraysPerClass, ClassMatcher classMatcher) {
+        return new SizeOfCalculator(rootRef, new PassThroughFilter(), null, StatisticsMode.LARGEST_ARRAYS, classMatcher, largestArraysPerClass).calc();
+    }
+
+    static DeepSize calculateSizesOf(Object rootRef, SizeOfFilter sizeOfFilter, String... fullyQualifiedClassnamePrefixes) {
+        return new SizeOfCalculator(rootRef, sizeOfFilter, fullyQualifiedClassnamePrefixes).calc();
+    }
+
+    static DeepSize calculateSizesOf(Object rootRef, SizeOfFilter sizeOfFilter, StatisticsMode statisticsMode, ClassMatcher classMatcher) {
+        return new SizeOfCalculator(rootRef, sizeOfFilter, null, statisticsMode, classMatcher).calc();
+    }
+
+    /**
+     * Like {@link #calculateSizesOf(Object, SizeOfFilter, StatisticsMode, ClassMatcher)}, handing every orphaned
+     * component found to the listener.
+     */
+    static DeepSize calculateSizesOf(Object rootRef, SizeOfFilter sizeOfFilter, StatisticsMode statisticsMode, ClassMatcher classMatcher, Consumer<Component> orphanListener) {
+        SizeOfCalculator calculator = new SizeOfCalculator(rootRef, sizeOfFilter, null, statisticsMode, classMatcher);
+        calculator.vaadinVisitor.setOrphanListener(orphanListener);
+        return calculator.calc();
+    }
+
+    /**
+     * Measures the VaadinService and the given sessions concurrently on the pool, one task per session plus one for
+     * the service itself (without its sessions). Objects reachable from several tasks are counted once, by whichever
+     * task visits them first; the per-class and Vaadin statistics of all tasks are merged.
+     *
+     * @param sessions the sessions of the service, e.g. as known to the {@link SessionFootprintTracker}
+     */
+    public static DeepSize calculateSizesInParallel(VaadinService service, Collection<VaadinSession> sessions, ForkJoinPool pool, StatisticsMode statisticsMode, String... fullyQualifiedClassnamePrefixes) {
+        return calculateSizesInParallel(service, sessions, pool, statisticsMode, ClassMatcher.ofPrefixes(fullyQualifiedClassnamePrefixes));
+    }
+
+    public static DeepSize calculateSizesInParallel(VaadinService service, Collection<VaadinSession> sessions, ForkJoinPool pool, StatisticsMode statisticsMode, ClassMatcher classMatcher) {
+        return calculateSizesInParallel(service, sessions, pool, statisticsMode, classMatcher, new MeasurementProgress());
+    }
+
+    /**
+     * Like {@link #calculateSizesInParallel(VaadinService, Collection, ForkJoinPool, StatisticsMode, ClassMatcher)},
+     * reporting every measured session to the progress and stopping with a CancellationException once it is cancelled.
+     */
+    public static DeepSize calculateSizesInParallel(VaadinService service, Collection<VaadinSession> sessions, ForkJoinPool pool, StatisticsMode statisticsMode, ClassMatcher classMatcher, MeasurementProgress progress) {
+        ConcurrentIdentitySet claimedObjects = new ConcurrentIdentitySet(pool.getParallelism());
+        List<SizeOfCalculator> calculators = new ArrayList<>(sessions.size() + 1);
+        calculators.add(new SizeOfCalculator(service, new VaadinScopeFilter(VaadinScopeFilter.Scope.SERVICE), claimedObjects, statisticsMode, classMatcher));
+        for (VaadinSession session : sessions) {
+            calculators.add(new SizeOfCalculator(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION), claimedObjects, statisticsMode, classMatcher));
+        }
+        for (SizeOfCalculator calculator : calculators) {
+            calculator.progress = progress;
+        }
+        progress.setTotal(calculators.size());
+
+        final long[] deepSizes = new long[calculators.size()];
+        pool.invoke(new ParallelWalk(calculators, deepSizes, 0, calculators.size()));
+
+        long deepSize = 0;
+        ClassHistogram classHistogram = new ClassHistogram();
+        IdentityHashMap<Class<?>, Instances> classToInstanceSizes = new IdentityHashMap<>();
+        VaadinVisitor vaadinVisitor = new VaadinVisitor();
+        for (int i = 0; i < deepSizes.length; i++) {
+            SizeOfCalculator calculator = calculators.get(i);
+            deepSize += deepSizes[i];
+            // renumbered before merging the histogram, so the instances stay distinct across the calculators of one crawl
+            calculator.classToInstanceSizes.forEach((clazz, instances) ->
+                    classToInstanceSizes.computeIfAbsent(clazz, k -> new Instances(calculator.instancesPerClass))
+                            .merge(instances, classHistogram.getCount(clazz)));
+            classHistogram.merge(calculator.classHistogram);
+            vaadinVisitor.merge(calculator.vaadinVisitor);
+        }
+        return toDeepSize(deepSize, classHistogram, classToInstanceSizes, vaadinVisitor.getVaadinStatistics());
+    }
+
+    /**
+     * An estimate of {@link #calculateSizesInParallel(VaadinService, Collection, ForkJoinPool, StatisticsMode, ClassMatcher)}
+     * whose cost does not grow with the contents of the sessions: the service without its sessions is measured exactly,
+     * a random sample of the sessions is measured fully, and the per-session sizes and per-class counts and bytes
+     * are extrapolated to all sessions. Sampled sessions are measured independently, so an object shared by several
+     * sessions counts for each of them.
+     * The cost still grows with the number of sessions, if slowly: the walk of the service visits the bookkeeping the
+     * container and Vaadin keep per session (map entries up to the cut at the HTTP session), and the sample is drawn
+     * from a copy of the session list. It is meant for a background thread such as the FootprintSampler's.
+     *
+     * @param sampleSize the number of sessions to measure; with at least as many sessions as there are the result is exact
+     */
+    public static ApproximateDeepSize calculateApproximateSizes(VaadinService service, Collection<VaadinSession> sessions, int sampleSize, ForkJoinPool pool, ClassMatcher classMatcher) {
+        List<VaadinSession> sampled = new ArrayList<>(sessions);
+        final int numSessions = sampled.size();
+        final int numSampled = Math.min(Math.max(sampleSize, 0), numSessions);
+        Random random = ThreadLocalRandom.current();
+        for (int i = 0; i < numSampled; i++) {
+            Collections.swap(sampled, i, i + random.nextInt(numSessions - i)); // partial Fisher-Yates shuffle
+        }
+
+        List<SizeOfCalculator> calculators = new ArrayList<>(numSampled + 1);
+        calculators.add(new SizeOfCalculator(service, new VaadinScopeFilter(VaadinScopeFilter.Scope.SERVICE), null, StatisticsMode.AGGREGATE, classMatcher));
+        for (VaadinSession session : sampled.subList(0, numSampled)) {
+            calculators.add(new SizeOfCalculator(session, new VaadinScopeFilter(VaadinScopeFilter.Scope.SESSION), null, StatisticsMode.AGGREGATE, classMatcher));
+        }
+        MeasurementProgress progress = new MeasurementProgress();
+        for (SizeOfCalculator calculator : calculators) {
+            calculator.progress = progress;
+        }
+        progress.setTotal(calculators.size());
+        final long[] deepSizes = new long[calculators.size()];
+        pool.invoke(new ParallelWalk(calculators, deepSizes, 0, calculators.size()));
+
+        ClassHistogram serviceHistogram = calculators.get(0).classHistogram;
+        Accumulator sessionSizes = new Accumulator();
+        Map<Class<?>, Accumulator> classCounts = new HashMap<>();
+        Map<Class<?>, Accumulator> classBytes = new HashMap<>();
+        for (Class<?> clazz : serviceHistogram.getTopClasses(serviceHistogram.getNumberOfClasses())) {
+            classCounts.put(clazz, new Accumulator());
+            classBytes.put(clazz, new Accumulator());
+        }
+        for (int i = 1; i < calculators.size(); i++) {
+            sessionSizes.add(deepSizes[i]);
+            ClassHistogram histogram = calculators.get(i).classHistogram;
+            for (Class<?> clazz : histogram.getTopClasses(histogram.getNumberOfClasses())) {
+                classCounts.computeIfAbsent(clazz, k -> new Accumulator()).add(histogram.getCount(clazz));
+                classBytes.computeIfAbsent(clazz, k -> new Accumulator()).add(histogram.getBytes(clazz));
+            }
+        }
+
+        final Estimate deepSize = sessionSizes.extrapolate(deepSizes[0], numSampled, numSessions);
+        final Map<String, Estimate> countEstimates = new HashMap<>();
+        final Map<String, Estimate> byteEstimates = new HashMap<>();
+        classCounts.forEach((clazz, accumulator) ->
+                countEstimates.merge(clazz.getName(), accumulator.extrapolate(serviceHistogram.getCount(clazz), numSampled, numSessions), SizeOfCalculator::sum));
+        classBytes.forEach((clazz, accumulator) ->
+                byteEstimates.merge(clazz.getName(), accumulator.extrapolate(serviceHistogram.getBytes(clazz), numSampled, numSessions), SizeOfCalculator::sum));
+
+        return new ApproximateDeepSize() {
+            @Override
+            public Estimate getDeepSize() {
+                return deepSize;
+            }
+
+            @Override
+            public int getNumberOfSessions() {
+                return numSessions;
+            }
+
+            @Override
+            public int getNumberOfSampledSessions() {
+                return numSampled;
+            }
+
+            @Override
+            public Map<String, Estimate> getClassCounts() {
+                return Collections.unmodifiableMap(countEstimates);
+            }
+
+            @Override
+            public Map<String, Estimate> getClassBytes() {
+                return Collections.unmodifiableMap(byteEstimates);
+            }
+        };
+    }
+
+    /**
+     * Two classes of the same name from different class loaders; their margins add up, which is conservative.
+     */
+    private static Estimate sum(Estimate a, Estimate b) {
+        return Accumulator.estimate(a.getValue() + b.getValue(), (a.getHigh() - a.getValue()) + (b.getHigh() - b.getValue()));
+    }
+
+    private static class ParallelWalk extends RecursiveAction {
+        private final List<SizeOfCalculator> calculators;
+        private final long[] deepSizes;
+        private final int from;
+        private final int to;
+
+        ParallelWalk(List<SizeOfCalculator> calculators, long[] deepSizes, int from, int to) {
+            this.calculators = calculators;
+            this.deepSizes = deepSizes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                SizeOfCalculator calculator = calculators.get(from);
+                calculator.progress.checkCancelled();
+                deepSizes[from] = calculator.walk();
+                calculator.progress.taskCompleted();
+            }
+            else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParallelWalk(calculators, deepSizes, from, mid), new ParallelWalk(calculators, deepSizes, mid, to));
+            }
+        }
+    }
+
+    private long walk() {
+        final long deepSize = sizeOf.deepSizeOf(filteringVisitorListener, this.rootRef);
+        return (claimedObjects == null ? deepSize : filteringVisitorListener.claimedSize);
+    }
+
+    private DeepSize calc() {
+        return toDeepSize(walk(), classHistogram, classToInstanceSizes, vaadinVisitor.getVaadinStatistics());
+    }
+
+    private static DeepSize toDeepSize(final long deepSize, final ClassHistogram classHistogram, final Map<Class<?>, Instances> classToInstanceSizes, final VaadinVisitor.VaadinStatistics vaadinStatistics) {
         return new DeepSize() {
             @Override
             public long getDeepSize() {
@@ -155,12 +585,30 @@ public class SizeOfCalculator {
 
             @Override
             public ClassStatistics[] getClassStatistics() {
+                return getTopClassStatistics(classHistogram.getNumberOfClasses());
+            }
+
+            @Override
+            public ClassStatistics[] getTopClassStatistics(int n) {
+                // sorted by instance count, descending
+                Class<?>[] topClasses = classHistogram.getTopClasses(n);
+                ClassStatistics[] classStats = new ClassStatistics[topClasses.length];
+                for (int i = 0; i < topClasses.length; i++) {
+                    Instances instances = classToInstanceSizes.get(topClasses[i]);
+                    classStats[i] = new ClsSize(topClasses[i].getName(), classHistogram.getCount(topClasses[i]), classHistogram.getBytes(topClasses[i]),
+                            (instances == null ? new InstanceStatistics[0] : instances.toArray()));
+                }
                 return classStats;
             }
 
+            @Override
+            public ClassHistogram getClassHistogram() {
+                return classHistogram;
+            }
+
             @Override
             public VaadinVisitor.VaadinStatistics getVaadinStatistics() {
-                return SizeOfCalculator.this.vaadinVisitor.getVaadinStatistics();
+                return vaadinStatistics;
             }
         };
     }
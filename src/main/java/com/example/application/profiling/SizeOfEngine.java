@@ -0,0 +1,149 @@
+package com.example.application.profiling;
+
+import org.ehcache.sizeof.SizeOf;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.ehcache.sizeof.impl.AgentSizeOf;
+import org.ehcache.sizeof.impl.PassThroughFilter;
+import org.ehcache.sizeof.impl.ReflectionSizeOf;
+import org.ehcache.sizeof.impl.UnsafeSizeOf;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ehcache SizeOf implementations. Which one is used by SizeOfCalculator is either configured or, by default,
+ * found by a probe that picks the fastest one working on this JVM (an agent cannot always be attached, and
+ * reflection is the slowest).
+ * Each engine keeps the shallow sizes of non-array classes for the lifetime of the class, shared by all the SizeOf
+ * instances it creates, so repeated measurements do not pay for sizing the same classes again.
+ */
+public enum SizeOfEngine {
+
+    AGENT {
+        @Override
+        SizeOf newUncachedInstance() {
+            return new AgentSizeOf(new PassThroughFilter(), false, true);
+        }
+    },
+    UNSAFE {
+        @Override
+        SizeOf newUncachedInstance() {
+            return new UnsafeSizeOf(new PassThroughFilter(), false, true);
+        }
+    },
+    REFLECTION {
+        @Override
+        SizeOf newUncachedInstance() {
+            return new ReflectionSizeOf(new PassThroughFilter(), false, true);
+        }
+    };
+
+    private static final Logger logger = Logger.getLogger(SizeOfEngine.class.getName());
+
+    private static volatile SizeOfEngine active;
+
+    private final ClassValue<AtomicLong> shallowSizes = new ClassValue<AtomicLong>() {
+        @Override
+        protected AtomicLong computeValue(Class<?> type) {
+            return new AtomicLong(-1);
+        }
+    };
+
+    /**
+     * @throws UnsupportedOperationException if the engine is not available on this JVM
+     */
+    abstract SizeOf newUncachedInstance();
+
+    /**
+     * @return a SizeOf walking the graph with the given filter and sizing objects with this engine.
+     * @throws UnsupportedOperationException if the engine is not available on this JVM
+     */
+    public SizeOf newInstance(SizeOfFilter sizeOfFilter) {
+        final SizeOf engine = newUncachedInstance();
+        return new SizeOf(sizeOfFilter, false, true) {
+            @Override
+            public long sizeOf(Object obj) {
+                Class<?> clazz = obj.getClass();
+                if (clazz.isArray()) {
+                    return engine.sizeOf(obj); // depends on the length
+                }
+                AtomicLong shallowSize = shallowSizes.get(clazz);
+                long size = shallowSize.get();
+                if (size < 0) {
+                    size = engine.sizeOf(obj);
+                    shallowSize.set(size);
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return the engine used by SizeOfCalculator, probing for the fastest one on first use unless one was selected.
+     */
+    public static SizeOfEngine getActive() {
+        SizeOfEngine engine = active;
+        if (engine == null) {
+            engine = select("auto");
+        }
+        return engine;
+    }
+
+    /**
+     * @param engine the name of an engine, or "auto" to probe for the fastest one.
+     */
+    public static synchronized SizeOfEngine select(String engine) {
+        if ("auto".equalsIgnoreCase(engine)) {
+            active = probe();
+        }
+        else {
+            SizeOfEngine selected = valueOf(engine.toUpperCase(Locale.ROOT));
+            selected.newUncachedInstance(); // fail early if not available
+            active = selected;
+        }
+        logger.log(Level.INFO, "Using the " + active + " SizeOf engine.");
+        return active;
+    }
+
+    private static SizeOfEngine probe() {
+        Object probe = probeGraph();
+        SizeOfEngine fastest = null;
+        long fastestNanos = Long.MAX_VALUE;
+        for (SizeOfEngine engine : values()) {
+            try {
+                SizeOf sizeOf = engine.newUncachedInstance();
+                if (sizeOf.sizeOf(new Object()) <= 0) {
+                    logger.log(Level.INFO, engine + " SizeOf engine gives implausible sizes, not using it.");
+                    continue;
+                }
+                sizeOf.deepSizeOf(probe); // warm up
+                long start = System.nanoTime();
+                for (int i = 0; i < 10; i++) {
+                    sizeOf.deepSizeOf(probe);
+                }
+                long nanos = System.nanoTime() - start;
+                logger.log(Level.INFO, engine + " SizeOf engine probe took " + nanos / 1000 + " µs.");
+                if (nanos < fastestNanos) {
+                    fastest = engine;
+                    fastestNanos = nanos;
+                }
+            } catch (UnsupportedOperationException | LinkageError e) {
+                logger.log(Level.INFO, engine + " SizeOf engine is not available: " + e);
+            }
+        }
+        if (fastest == null) {
+            throw new UnsupportedOperationException("No SizeOf engine is available on this JVM.");
+        }
+        return fastest;
+    }
+
+    private static Object probeGraph() {
+        Map<String, Object> graph = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            graph.put("key" + i, (i % 2 == 0 ? new ArrayList<>(Collections.nCopies(i % 10, i)) : new long[i % 10]));
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.application.profiling;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Compares two {@link FootprintSnapshot}s and ranks classes and sessions by growth. Both snapshots are read in one
+ * merge pass over their sorted sections, and only the n fastest growing entries are kept, so the snapshots can be
+ * far larger than the heap of the diff. Sessions are only matched between snapshots of the same JVM; across a
+ * restart all sessions count as gone and new, and only classes are compared.
+ * <pre>
+ * java -cp target/classes com.example.application.profiling.SnapshotDiff before.vms after.vms [n]
+ * </pre>
+ */
+public final class SnapshotDiff {
+
+    public static final class Growth {
+        private final String key;
+        private final long before;
+        private final long after;
+        private final long countDelta;
+
+        Growth(String key, long before, long after, long countDelta) {
+            this.key = key;
+            this.before = before;
+            this.after = after;
+            this.countDelta = countDelta;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getBefore() {
+            return before;
+        }
+
+        public long getAfter() {
+            return after;
+        }
+
+        public long getDelta() {
+            return after - before;
+        }
+
+        public long getCountDelta() {
+            return countDelta; // instances for classes, components for sessions
+        }
+    }
+
+    private static final Comparator<Growth> BY_DELTA = Comparator.comparingLong(Growth::getDelta).thenComparingLong(Growth::getCountDelta);
+
+    /**
+     * The n largest growths seen, in a min-heap so a smaller one is dropped in O(log n).
+     */
+    private static final class TopGrowths {
+        private final int n;
+        private final PriorityQueue<Growth> heap;
+
+        TopGrowths(int n) {
+            this.n = n;
+            this.heap = new PriorityQueue<>(Math.max(1, n), BY_DELTA);
+        }
+
+        void offer(Growth growth) {
+            if (heap.size() < n) {
+                heap.add(growth);
+            }
+            else if (n > 0 && BY_DELTA.compare(growth, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(growth);
+            }
+        }
+
+        List<Growth> toList() {
+            List<Growth> retVal = new ArrayList<>(heap);
+            retVal.sort(Collections.reverseOrder(BY_DELTA));
+            return retVal;
+        }
+    }
+
+    private long deepSizeBefore;
+    private long deepSizeAfter;
+    private int numNewSessions;
+    private int numGoneSessions;
+    private boolean sameJvm;
+    private final TopGrowths classGrowths;
+    private final TopGrowths sessionGrowths;
+
+    private SnapshotDiff(int n) {
+        this.classGrowths = new TopGrowths(n);
+        this.sessionGrowths = new TopGrowths(n);
+    }
+
+    /**
+     * @param n the number of classes and of sessions to rank
+     */
+    public static SnapshotDiff compare(FootprintSnapshot.Reader before, FootprintSnapshot.Reader after, int n) throws IOException {
+        SnapshotDiff diff = new SnapshotDiff(n);
+        diff.deepSizeBefore = before.getDeepSize();
+        diff.deepSizeAfter = after.getDeepSize();
+        diff.sameJvm = before.getJvmId().equals(after.getJvmId());
+
+        FootprintSnapshot.ClassRecord classBefore = before.nextClass();
+        FootprintSnapshot.ClassRecord classAfter = after.nextClass();
+        while (classBefore != null || classAfter != null) {
+            int order = (classBefore == null ? 1 : classAfter == null ? -1 : classBefore.getName().compareTo(classAfter.getName()));
+            if (order < 0) {
+                diff.classGrowths.offer(new Growth(classBefore.getName(), classBefore.getBytes(), 0, -classBefore.getCount()));
+                classBefore = before.nextClass();
+            }
+            else if (order > 0) {
+                diff.classGrowths.offer(new Growth(classAfter.getName(), 0, classAfter.getBytes(), classAfter.getCount()));
+                classAfter = after.nextClass();
+            }
+            else {
+                diff.classGrowths.offer(new Growth(classAfter.getName(), classBefore.getBytes(), classAfter.getBytes(), classAfter.getCount() - classBefore.getCount()));
+                classBefore = before.nextClass();
+                classAfter = after.nextClass();
+            }
+        }
+
+        FootprintSnapshot.SessionRecord sessionBefore = before.nextSession();
+        FootprintSnapshot.SessionRecord sessionAfter = after.nextSession();
+        while (sessionBefore != null || sessionAfter != null) {
+            int order = (sessionBefore == null ? 1 : sessionAfter == null ? -1 : !diff.sameJvm ? -1 // same description, another session
+                    : sessionBefore.getDescription().compareTo(sessionAfter.getDescription()));
+            if (order < 0) {
+                diff.numGoneSessions++;
+                sessionBefore = before.nextSession();
+            }
+            else if (order > 0) {
+                diff.numNewSessions++;
+                sessionAfter = after.nextSession();
+            }
+            else {
+                // without deep sizes on both sides, the number of components is the best measure of growth there is
+                boolean sized = sessionBefore.getBytes() >= 0 && sessionAfter.getBytes() >= 0;
+                diff.sessionGrowths.offer(new Growth(sessionAfter.getDescription(),
+                        (sized ? sessionBefore.getBytes() : 0), (sized ? sessionAfter.getBytes() : 0),
+                        sessionAfter.getNumberOfComponents() - sessionBefore.getNumberOfComponents()));
+                sessionBefore = before.nextSession();
+                sessionAfter = after.nextSession();
+            }
+        }
+        return diff;
+    }
+
+    public long getDeepSizeBefore() {
+        return deepSizeBefore;
+    }
+
+    public long getDeepSizeAfter() {
+        return deepSizeAfter;
+    }
+
+    public int getNumberOfNewSessions() {
+        return numNewSessions;
+    }
+
+    public int getNumberOfGoneSessions() {
+        return numGoneSessions;
+    }
+
+    /**
+     * @return whether both snapshots were taken in the same JVM, so their sessions could be matched.
+     */
+    public boolean isSameJvm() {
+        return sameJvm;
+    }
+
+    /**
+     * @return the fastest growing classes by shallow bytes, largest growth first.
+     */
+    public List<Growth> getClassGrowths() {
+        return classGrowths.toList();
+    }
+
+    /**
+     * @return the fastest growing sessions present in both snapshots, largest growth first.
+     */
+    public List<Growth> getSessionGrowths() {
+        return sessionGrowths.toList();
+    }
+
+    public void print(PrintStream out) {
+        out.println("Deep size " + deepSizeBefore + " -> " + deepSizeAfter + " (" + signed(deepSizeAfter - deepSizeBefore) + ").");
+        out.println(numNewSessions + " new session(s), " + numGoneSessions + " session(s) gone.");
+        if (!sameJvm) {
+            out.println("The snapshots are of different JVMs, their sessions cannot be matched.");
+        }
+        out.println();
+        out.println("Classes by growth:");
+        for (Growth growth : getClassGrowths()) {
+            out.println("  " + growth.getKey() + ": " + signed(growth.getDelta()) + " bytes, " + signed(growth.getCountDelta()) + " instances.");
+        }
+        out.println();
+        out.println("Sessions by growth:");
+        for (Growth growth : getSessionGrowths()) {
+            out.println("  " + growth.getKey() + ": " + signed(growth.getDelta()) + " bytes, " + signed(growth.getCountDelta()) + " components.");
+        }
+    }
+
+    private static String signed(long value) {
+        return (value > 0 ? "+" : "") + value;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: SnapshotDiff <before> <after> [number of classes and sessions to show, default 20]");
+            System.exit(2);
+        }
+        int n = (args.length == 3 ? Integer.parseInt(args[2]) : 20);
+        try (FootprintSnapshot.Reader before = new FootprintSnapshot.Reader(Files.newInputStream(Paths.get(args[0])));
+             FootprintSnapshot.Reader after = new FootprintSnapshot.Reader(Files.newInputStream(Paths.get(args[1])))) {
+            compare(before, after, n).print(System.out);
+        }
+    }
+}
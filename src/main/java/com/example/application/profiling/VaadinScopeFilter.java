@@ -0,0 +1,106 @@
+package com.example.application.profiling;
+
+import com.vaadin.flow.server.VaadinContext;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.server.WrappedSession;
+import org.ehcache.sizeof.filters.SizeOfFilter;
+import org.springframework.beans.factory.BeanFactory;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpSession;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Keeps a deep size measurement inside one VaadinSession or one UI: edges leading back to node-wide objects (the
+ * VaadinService, the servlet context, the Spring context, the HTTP session which via its manager knows all other
+ * sessions) are cut. In UI scope the owning VaadinSession is cut as well, so sibling UIs are not reached.
+ * SERVICE scope is the complement of SESSION scope: everything but the VaadinSessions and the HTTP sessions of the
+ * container, which would otherwise lead into the sessions' attributes. ATTRIBUTE scope is meant for
+ * the value of a session attribute and, like UI scope, does not lead back into the session. NODE scope is for a walk
+ * rooted at the VaadinService together with its sessions: it keeps both, but cuts the container around them.
+ */
+public class VaadinScopeFilter implements SizeOfFilter {
+
+    public enum Scope {
+        SERVICE,
+        SESSION,
+        UI,
+        ATTRIBUTE,
+        NODE
+    }
+
+    private static final Class<?>[] SESSION_BOUNDARIES = {
+            VaadinService.class,
+            VaadinContext.class,
+            ServletContext.class,
+            WrappedSession.class,
+            HttpSession.class,
+            BeanFactory.class,
+            ClassLoader.class,
+            Thread.class
+    };
+
+    private static final Class<?>[] SERVICE_BOUNDARIES = {
+            VaadinSession.class,
+            WrappedSession.class,
+            HttpSession.class
+    };
+
+    private static final Class<?>[] NODE_BOUNDARIES = {
+            VaadinContext.class,
+            ServletContext.class,
+            WrappedSession.class,
+            HttpSession.class,
+            BeanFactory.class,
+            ClassLoader.class,
+            Thread.class
+    };
+
+    private final Class<?>[] boundaries;
+
+    public VaadinScopeFilter(Scope scope) {
+        if (scope == Scope.SERVICE) {
+            this.boundaries = SERVICE_BOUNDARIES;
+        }
+        else if (scope == Scope.NODE) {
+            this.boundaries = NODE_BOUNDARIES;
+        }
+        else if (scope == Scope.UI || scope == Scope.ATTRIBUTE) {
+            this.boundaries = new Class<?>[SESSION_BOUNDARIES.length + 1];
+            System.arraycopy(SESSION_BOUNDARIES, 0, this.boundaries, 0, SESSION_BOUNDARIES.length);
+            this.boundaries[SESSION_BOUNDARIES.length] = VaadinSession.class;
+        }
+        else {
+            this.boundaries = SESSION_BOUNDARIES;
+        }
+    }
+
+    @Override
+    public Collection<Field> filterFields(Class<?> klazz, Collection<Field> fields) {
+        Collection<Field> retVal = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            if (!isBoundary(field.getType())) {
+                retVal.add(field);
+            }
+        }
+        return retVal;
+    }
+
+    @Override
+    public boolean filterClass(Class<?> klazz) {
+        // fields declared as Object or as an unrelated interface can still lead across the boundary, so the class check is the real guard
+        return !isBoundary(klazz);
+    }
+
+    private boolean isBoundary(Class<?> klazz) {
+        for (Class<?> boundary : boundaries) {
+            if (boundary.isAssignableFrom(klazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
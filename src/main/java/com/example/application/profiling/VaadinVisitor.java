@@ -6,19 +6,53 @@ import com.vaadin.flow.component.UI;
 import com.vaadin.flow.server.Attributes;
 import com.vaadin.flow.server.VaadinSession;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.example.application.profiling.ObjDescription.getDescription;
 
+/**
+ * Collects the VaadinSessions, UIs and components seen during a crawl. Every object gets an int id and is stored as
+ * its class id in primitive arrays, sessions and UIs also with their ObjectIds tag, so distinct objects are never
+ * merged the way equal identity hash codes would; the description strings are only rendered when a report asks for
+ * them. The statistics order UIs by session and components by UI, so the UIs of a session and the
+ * components of a UI are contiguous index ranges.
+ * Sessions and UIs are known if they were visited or own a visited UI or component.
+ */
 public class VaadinVisitor {
 
-    Logger logger = Logger.getLogger(VaadinVisitor.class.getName());
+    private static final Logger logger = Logger.getLogger(VaadinVisitor.class.getName());
 
     public interface VaadinStatistics{
-        int getNumberOfVaadinSessions();
+        int getNumberOfVaadinSessions(); // visited sessions
+
+        int getNumberOfKnownSessions();
+        int getNumberOfUIs();
+        int getNumberOfComponents();
+        int getNumberOfOrphanedComponents();
+
+        // index based access, sessions are [0, getNumberOfKnownSessions()), UIs and components likewise
+        String getSessionDescription(int session);
+        List<String> getAttributeKeys(int session); // empty if the session was not visited
+        int getFirstUI(int session);
+        int getNumberOfUIs(int session);
+        String getUIDescription(int ui);
+        int getFirstUIWithoutSession(); // UIs without session are [getFirstUIWithoutSession(), getNumberOfUIs())
+        int getFirstComponent(int ui);
+        int getNumberOfComponents(int ui);
+        String getComponentDescription(int component);
+        int getFirstOrphanedComponent(); // orphans are [getFirstOrphanedComponent(), getNumberOfComponents())
+        Map<String, Integer> getOrphanedComponentCounts(); // by class name
+        int indexOf(VaadinSession session); // -1 if unknown
+        int indexOf(UI ui); // -1 if unknown
+
+        // String views, rendered on every call: fine for a handful of sessions, expensive for a busy node
         Map<String, Set<String>> getUI2ComponentsMap();
         Map<String, Set<String>> getSession2UIsMap();
         Map<String, Set<String>> getSession2AttribKeysMap();
@@ -29,124 +63,493 @@ public class VaadinVisitor {
         Set<String> getOrphanedComponents();
     }
 
-    public VaadinStatistics getVaadinStatistics(){
-        return new VaadinStatistics() {
-            @Override
-            public int getNumberOfVaadinSessions() {
-                return VaadinVisitor.this.numVaadinSessions;
-            }
+    /**
+     * A growable int array.
+     */
+    static final class Ints {
+        private int[] values = new int[16];
+        private int size;
 
-            @Override
-            public Map<String, Set<String>> getUI2ComponentsMap() {
-                // even better: make the sets in the map unmodifiable too, but that's for another time
-                return Collections.unmodifiableMap(VaadinVisitor.this.components);
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
             }
+            values[size++] = value;
+        }
 
-            @Override
-            public Map<String, Set<String>> getSession2UIsMap() {
-                // even better: make the sets in the map unmodifiable too, but that's for another time
-                return Collections.unmodifiableMap(VaadinVisitor.this.uis);
-            }
+        int get(int index) {
+            return values[index];
+        }
 
-            @Override
-            public Map<String, Set<String>> getSession2AttribKeysMap() {
-                return Collections.unmodifiableMap(VaadinVisitor.this.attributes);
-            }
+        int size() {
+            return size;
+        }
+    }
 
-            @Override
-            public Set<String> getAttributesOfCurrentSession() {
-                VaadinSession currentSession = VaadinSession.getCurrent();
-                if (currentSession == null){
-                    throw new RuntimeException("Called out of a Vaadin execution context!");
-                }
-                else{
-                    return Collections.unmodifiableSet(attributes.get(getDescription(currentSession)));
-                }
-            }
+    /**
+     * A growable long array.
+     */
+    private static final class Longs {
+        private long[] values = new long[16];
+        private int size;
 
-            @Override
-            public Set<String> getUIsOfCurrentSession() {
-                VaadinSession currentSession = VaadinSession.getCurrent();
-                if (currentSession == null){
-                    throw new RuntimeException("Called out of a Vaadin execution context!");
-                }
-                else{
-                    return Collections.unmodifiableSet(uis.get(getDescription(currentSession)));
-                }
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
             }
+            values[size++] = value;
+        }
 
-            @Override
-            public Set<String> getComponentsOfCurrentUI() {
-                UI currentUI = UI.getCurrent();
-                if (currentUI == null){
-                    throw new RuntimeException("Called out of a Vaadin execution context!");
-                }
-                else{
-                    return Collections.unmodifiableSet(components.get(getDescription(currentUI)));
-                }
-            }
+        long get(int index) {
+            return values[index];
+        }
+    }
+
+    /**
+     * Getters for the private attribute maps of VaadinSession and Attributes, resolved once. The field is declared
+     * by VaadinSession itself, so the same handle works for subclasses like SpringVaadinSession. If the fields
+     * cannot be made accessible (e.g. a later Vaadin version renamed them) attribute keys are not reported.
+     */
+    private static final class AttributeAccess {
+        private static final MethodHandle SESSION_ATTRIBUTES; // (VaadinSession)Attributes
+        private static final MethodHandle ATTRIBUTES_MAP; // (Attributes)Map
 
-            @Override
-            public Set<String> getOrphanedComponents() {
-                Set<String> orphans = VaadinVisitor.this.components.get(getDescription(null));
-                return (orphans == null? Collections.emptySet() : Collections.unmodifiableSet(orphans));
+        static {
+            MethodHandle sessionAttributes = null;
+            MethodHandle attributesMap = null;
+            try {
+                Field attribsField = VaadinSession.class.getDeclaredField("attributes");
+                attribsField.setAccessible(true);
+                Field hashField = Attributes.class.getDeclaredField("attributes");
+                hashField.setAccessible(true);
+                sessionAttributes = MethodHandles.lookup().unreflectGetter(attribsField)
+                        .asType(MethodType.methodType(Attributes.class, VaadinSession.class));
+                attributesMap = MethodHandles.lookup().unreflectGetter(hashField)
+                        .asType(MethodType.methodType(Map.class, Attributes.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.log(Level.SEVERE, "Reflection problem, session attributes will not be reported.", e);
+                sessionAttributes = null;
+                attributesMap = null;
             }
-        };
+            SESSION_ATTRIBUTES = sessionAttributes;
+            ATTRIBUTES_MAP = attributesMap;
+        }
     }
 
-    private final HashMap<String, Set<String>> components; // ui->components
-    private final HashMap<String, Set<String>> uis; // session->uis
-    private final HashMap<String, Set<String>> attributes; // session->attribute-keys
+    /**
+     * @return the live attribute map of the session, read without taking the session lock; empty if it cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> getAttributes(VaadinSession vaadinSession) {
+        if (AttributeAccess.ATTRIBUTES_MAP == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            Attributes attributes = (Attributes) AttributeAccess.SESSION_ATTRIBUTES.invokeExact(vaadinSession);
+            return (Map<String, Object>) AttributeAccess.ATTRIBUTES_MAP.invokeExact(attributes);
+        } catch (Throwable t) {
+            logger.log(Level.SEVERE, "Reflection problem.", t);
+            return Collections.emptyMap();
+        }
+    }
+
+    private final IdentityHashMap<Class<?>, Integer> classIds = new IdentityHashMap<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+
+    private final IdentityHashMap<VaadinSession, Integer> sessionIds = new IdentityHashMap<>();
+    private final Ints sessionClasses = new Ints();
+    private final Longs sessionTags = new Longs(); // see ObjectIds
+    private final List<String[]> sessionAttributes = new ArrayList<>(); // null if the session was not visited
+
+    private final IdentityHashMap<UI, Integer> uiIds = new IdentityHashMap<>();
+    private final Ints uiClasses = new Ints();
+    private final Longs uiTags = new Longs();
+    private final Ints uiSessions = new Ints(); // -1 for a UI without session
+
+    private final Ints componentClasses = new Ints();
+    private final Ints componentUIs = new Ints(); // -1 for an orphan
+
     private int numVaadinSessions;
+    private Consumer<Component> orphanListener; // null if nobody is interested in the orphans themselves
 
     public VaadinVisitor(){
-        this.components = new HashMap<>();
-        this.uis = new HashMap<>();
-        this.attributes = new HashMap<>();
         numVaadinSessions = 0;
     }
 
+    /**
+     * Adds the findings of another visitor, e.g. one that crawled a different part of the graph in parallel.
+     */
+    public void merge(VaadinVisitor other) {
+        this.numVaadinSessions += other.numVaadinSessions;
+        for (Map.Entry<VaadinSession, Integer> session : other.sessionIds.entrySet()) {
+            String[] attribs = other.sessionAttributes.get(session.getValue());
+            if (attribs != null) {
+                this.sessionAttributes.set(sessionId(session.getKey()), attribs);
+            }
+        }
+        int[] uiMapping = new int[other.uiClasses.size()];
+        for (Map.Entry<UI, Integer> ui : other.uiIds.entrySet()) {
+            uiMapping[ui.getValue()] = uiId(ui.getKey());
+        }
+        for (int i = 0; i < other.componentClasses.size(); i++) {
+            int ui = other.componentUIs.get(i);
+            componentClasses.add(classId(other.classes.get(other.componentClasses.get(i))));
+            componentUIs.add(ui < 0 ? -1 : uiMapping[ui]);
+        }
+    }
+
+    /**
+     * The listener gets every orphaned component as it is visited, e.g. to keep a weak reference to some of them.
+     */
+    void setOrphanListener(Consumer<Component> orphanListener) {
+        this.orphanListener = orphanListener;
+    }
+
     public void accept(Object object) {
         if (object instanceof VaadinSession){
             numVaadinSessions++;
 
             VaadinSession vaadinSession = (VaadinSession) object;
-            try {
-                Class clazz = vaadinSession.getClass();
-                while (!clazz.getName().equals("com.vaadin.flow.server.VaadinSession")){
-                    clazz = clazz.getSuperclass(); // e.g. in a Spring Boot application the class at hand is only _derived_ from VaadinSession
+            sessionAttributes.set(sessionId(vaadinSession), getAttributeKeys(vaadinSession));
+        }
+        if (object instanceof UI){
+            uiId((UI) object);
+        }
+        else if (object instanceof Component){
+            Component component = (Component) object;
+            UI ui = component.getUI().orElse(null);
+
+            componentClasses.add(classId(object.getClass()));
+            componentUIs.add(ui == null ? -1 : uiId(ui));
+            if (ui == null && orphanListener != null) {
+                orphanListener.accept(component);
+            }
+        }
+    }
+
+    private int classId(Class<?> clazz) {
+        Integer id = classIds.get(clazz);
+        if (id == null) {
+            id = classes.size();
+            classIds.put(clazz, id);
+            classes.add(clazz);
+        }
+        return id;
+    }
+
+    private int sessionId(VaadinSession session) {
+        Integer id = sessionIds.get(session);
+        if (id == null) {
+            id = sessionClasses.size();
+            sessionIds.put(session, id);
+            sessionClasses.add(classId(session.getClass()));
+            sessionTags.add(ObjectIds.idOf(session));
+            sessionAttributes.add(null);
+        }
+        return id;
+    }
+
+    private int uiId(UI ui) {
+        Integer id = uiIds.get(ui);
+        if (id == null) {
+            id = uiClasses.size();
+            uiIds.put(ui, id);
+            VaadinSession session = ui.getSession();
+            uiClasses.add(classId(ui.getClass()));
+            uiTags.add(ObjectIds.idOf(ui));
+            uiSessions.add(session == null ? -1 : sessionId(session));
+        }
+        return id;
+    }
+
+    private String[] getAttributeKeys(VaadinSession vaadinSession) {
+        try {
+            return getAttributes(vaadinSession).keySet().toArray(new String[0]);
+        } catch (ConcurrentModificationException e) {
+            logger.log(Level.FINE, "Attributes of " + getDescription(vaadinSession) + " changed while reading them.");
+            return new String[0];
+        }
+    }
+
+    /**
+     * @return the statistics as of now, not referencing any of the visited objects.
+     */
+    public VaadinStatistics getVaadinStatistics(){
+        return new Statistics(this);
+    }
+
+    /**
+     * Counting sort by owner, owner -1 goes last. Fills the numOwners + 2 boundaries in first: first[owner] is the
+     * start of each owner's range, first[numOwners] the start of the unowned range and first[numOwners + 1] its end.
+     * Returns the new position of every element.
+     */
+    static int[] sortByOwner(Ints owners, int numOwners, int[] first) {
+        for (int i = 0; i < owners.size(); i++) {
+            int owner = owners.get(i);
+            first[(owner < 0 ? numOwners : owner) + 1]++;
+        }
+        for (int owner = 0; owner <= numOwners; owner++) {
+            first[owner + 1] += first[owner];
+        }
+        int[] next = Arrays.copyOf(first, numOwners + 1);
+        int[] order = new int[owners.size()];
+        for (int i = 0; i < owners.size(); i++) {
+            int owner = owners.get(i);
+            order[i] = next[owner < 0 ? numOwners : owner]++;
+        }
+        return order;
+    }
+
+    /**
+     * The immutable, compact result of a crawl: UIs sorted by session and components sorted by UI, each group
+     * followed by the ones without owner, so the owner only needs to store where its range starts.
+     */
+    private static final class Statistics implements VaadinStatistics {
+        private final int numVaadinSessions;
+        private final Class<?>[] classes;
+
+        private final int[] sessionClasses;
+        private final long[] sessionTags;
+        private final String[][] sessionAttributes;
+        // numSessions + 2 boundaries: the UIs of session s are [sessionFirstUI[s], sessionFirstUI[s + 1]),
+        // sessionFirstUI[numSessions] starts the UIs without session and the last entry ends them
+        private final int[] sessionFirstUI;
+
+        private final int[] uiClasses;
+        private final long[] uiTags;
+        // numUIs + 2 boundaries: the components of UI u are [uiFirstComponent[u], uiFirstComponent[u + 1]),
+        // uiFirstComponent[numUIs] starts the orphans and the last entry ends them
+        private final int[] uiFirstComponent;
+
+        private final int[] componentClasses;
+
+        Statistics(VaadinVisitor visitor) {
+            this.numVaadinSessions = visitor.numVaadinSessions;
+            this.classes = visitor.classes.toArray(new Class<?>[0]);
+
+            int numSessions = visitor.sessionClasses.size();
+            this.sessionClasses = Arrays.copyOf(visitor.sessionClasses.values, numSessions);
+            this.sessionTags = Arrays.copyOf(visitor.sessionTags.values, numSessions);
+            this.sessionAttributes = visitor.sessionAttributes.toArray(new String[0][]);
+
+            int numUIs = visitor.uiClasses.size();
+            this.sessionFirstUI = new int[numSessions + 2];
+            int[] uiOrder = sortByOwner(visitor.uiSessions, numSessions, sessionFirstUI);
+            this.uiClasses = new int[numUIs];
+            this.uiTags = new long[numUIs];
+            for (int ui = 0; ui < numUIs; ui++) {
+                uiClasses[uiOrder[ui]] = visitor.uiClasses.get(ui);
+                uiTags[uiOrder[ui]] = visitor.uiTags.get(ui);
+            }
+
+            int numComponents = visitor.componentClasses.size();
+            Ints componentUIs = new Ints();
+            for (int component = 0; component < numComponents; component++) {
+                int ui = visitor.componentUIs.get(component);
+                componentUIs.add(ui < 0 ? -1 : uiOrder[ui]);
+            }
+            this.uiFirstComponent = new int[numUIs + 2];
+            int[] componentOrder = sortByOwner(componentUIs, numUIs, uiFirstComponent);
+            this.componentClasses = new int[numComponents];
+            for (int component = 0; component < numComponents; component++) {
+                componentClasses[componentOrder[component]] = visitor.componentClasses.get(component);
+            }
+        }
+
+        @Override
+        public int getNumberOfVaadinSessions() {
+            return numVaadinSessions;
+        }
+
+        @Override
+        public int getNumberOfKnownSessions() {
+            return sessionClasses.length;
+        }
+
+        @Override
+        public int getNumberOfUIs() {
+            return uiClasses.length;
+        }
+
+        @Override
+        public int getNumberOfComponents() {
+            return componentClasses.length;
+        }
+
+        @Override
+        public int getNumberOfOrphanedComponents() {
+            return componentClasses.length - getFirstOrphanedComponent();
+        }
+
+        @Override
+        public String getSessionDescription(int session) {
+            return ObjDescription.getDescription(classes[sessionClasses[session]], sessionTags[session]);
+        }
+
+        @Override
+        public List<String> getAttributeKeys(int session) {
+            String[] attribs = sessionAttributes[session];
+            return (attribs == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(attribs)));
+        }
+
+        @Override
+        public int getFirstUI(int session) {
+            return sessionFirstUI[session];
+        }
+
+        @Override
+        public int getNumberOfUIs(int session) {
+            return sessionFirstUI[session + 1] - sessionFirstUI[session];
+        }
+
+        @Override
+        public String getUIDescription(int ui) {
+            return ObjDescription.getDescription(classes[uiClasses[ui]], uiTags[ui]);
+        }
+
+        @Override
+        public int getFirstUIWithoutSession() {
+            return sessionFirstUI[sessionClasses.length];
+        }
+
+        @Override
+        public int getFirstComponent(int ui) {
+            return uiFirstComponent[ui];
+        }
+
+        @Override
+        public int getNumberOfComponents(int ui) {
+            return uiFirstComponent[ui + 1] - uiFirstComponent[ui];
+        }
+
+        @Override
+        public String getComponentDescription(int component) {
+            return ObjDescription.getCrawlDescription(classes[componentClasses[component]], component);
+        }
+
+        @Override
+        public int getFirstOrphanedComponent() {
+            return uiFirstComponent[uiClasses.length];
+        }
+
+        @Override
+        public Map<String, Integer> getOrphanedComponentCounts() {
+            Map<String, Integer> retVal = new HashMap<>();
+            for (int component = getFirstOrphanedComponent(); component < componentClasses.length; component++) {
+                retVal.merge(classes[componentClasses[component]].getName(), 1, Integer::sum);
+            }
+            return retVal;
+        }
+
+        @Override
+        public int indexOf(VaadinSession session) {
+            return (session == null ? -1 : indexOf(session, sessionTags));
+        }
+
+        @Override
+        public int indexOf(UI ui) {
+            return (ui == null ? -1 : indexOf(ui, uiTags));
+        }
+
+        private static int indexOf(Object object, long[] tags) {
+            long tag = ObjectIds.idOf(object);
+            for (int i = 0; i < tags.length; i++) {
+                if (tags[i] == tag) {
+                    return i;
                 }
-                Field attribsField = clazz.getDeclaredField("attributes");
-                attribsField.setAccessible(true);
-                Attributes attributes = (Attributes) (attribsField.get(vaadinSession));
-                Field hashField = attributes.getClass().getDeclaredField("attributes");
-                hashField.setAccessible(true);
-                HashMap<String, Object> attribs = (HashMap<String, Object>) (hashField.get(attributes));
-                Set<String> keys = Collections.unmodifiableSet(attribs.keySet());
-                this.attributes.put(getDescription(vaadinSession), keys);
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                logger.log(Level.SEVERE, "Reflection problem.", e);
             }
+            return -1;
+        }
 
+        @Override
+        public Map<String, Set<String>> getUI2ComponentsMap() {
+            Map<String, Set<String>> retVal = new HashMap<>();
+            for (int ui = 0; ui < uiClasses.length; ui++) {
+                retVal.put(getUIDescription(ui), getComponents(ui));
+            }
+            if (getNumberOfOrphanedComponents() > 0) {
+                retVal.put(getDescription(null), getOrphanedComponents());
+            }
+            return Collections.unmodifiableMap(retVal);
+        }
 
+        @Override
+        public Map<String, Set<String>> getSession2UIsMap() {
+            Map<String, Set<String>> retVal = new HashMap<>();
+            for (int session = 0; session < sessionClasses.length; session++) {
+                if (getNumberOfUIs(session) > 0) {
+                    retVal.put(getSessionDescription(session), getUIs(session));
+                }
+            }
+            return Collections.unmodifiableMap(retVal);
         }
-        if (object instanceof UI){
-            UI ui = (UI) object;
-            VaadinSession vaadinSession = ui.getSession();
-            final String sessionDesc = getDescription(vaadinSession);
-            uis.computeIfAbsent(sessionDesc, k -> new HashSet<>());
-            uis.get(sessionDesc).add(getDescription(ui));
+
+        @Override
+        public Map<String, Set<String>> getSession2AttribKeysMap() {
+            Map<String, Set<String>> retVal = new HashMap<>();
+            for (int session = 0; session < sessionClasses.length; session++) {
+                if (sessionAttributes[session] != null) {
+                    retVal.put(getSessionDescription(session), Collections.unmodifiableSet(new HashSet<>(getAttributeKeys(session))));
+                }
+            }
+            return Collections.unmodifiableMap(retVal);
+        }
+
+        @Override
+        public Set<String> getAttributesOfCurrentSession() {
+            return Collections.unmodifiableSet(new HashSet<>(getAttributeKeys(currentSession())));
+        }
+
+        @Override
+        public Set<String> getUIsOfCurrentSession() {
+            return getUIs(currentSession());
         }
-        else if (object instanceof Component){
-            Component component = (Component) object;
-            String componentDesc = getDescription(object);
 
-            Optional<UI> optUI = component.getUI();
-            UI ui = optUI.orElse(null);
-            String uiDesc = getDescription(ui);
+        @Override
+        public Set<String> getComponentsOfCurrentUI() {
+            UI currentUI = UI.getCurrent();
+            if (currentUI == null){
+                throw new RuntimeException("Called out of a Vaadin execution context!");
+            }
+            int ui = indexOf(currentUI);
+            return (ui < 0 ? Collections.emptySet() : getComponents(ui));
+        }
 
-            components.computeIfAbsent(uiDesc, k -> new HashSet<>());
-            this.components.get(uiDesc).add(componentDesc);
+        @Override
+        public Set<String> getOrphanedComponents() {
+            return componentDescriptions(getFirstOrphanedComponent(), componentClasses.length);
+        }
+
+        private int currentSession() {
+            VaadinSession currentSession = VaadinSession.getCurrent();
+            if (currentSession == null){
+                throw new RuntimeException("Called out of a Vaadin execution context!");
+            }
+            int session = indexOf(currentSession);
+            if (session < 0) {
+                throw new IllegalStateException("The current VaadinSession was not visited.");
+            }
+            return session;
+        }
+
+        private Set<String> getUIs(int session) {
+            Set<String> retVal = new HashSet<>();
+            for (int ui = getFirstUI(session); ui < sessionFirstUI[session + 1]; ui++) {
+                retVal.add(getUIDescription(ui));
+            }
+            return Collections.unmodifiableSet(retVal);
+        }
+
+        private Set<String> getComponents(int ui) {
+            return componentDescriptions(getFirstComponent(ui), uiFirstComponent[ui + 1]);
+        }
+
+        private Set<String> componentDescriptions(int from, int to) {
+            Set<String> retVal = new HashSet<>();
+            for (int component = from; component < to; component++) {
+                retVal.add(getComponentDescription(component));
+            }
+            return Collections.unmodifiableSet(retVal);
         }
     }
 }
@@ -0,0 +1,35 @@
+package com.example.application.profiling;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A weak reference comparing by the identity of its referent, usable as a key in a concurrent map. Lookups use a key
+ * without queue; stored keys are registered with a queue, and once cleared still equal themselves, so the entry can be
+ * removed when the key comes out of the queue.
+ */
+final class WeakIdentityKey<T> extends WeakReference<T> {
+    private final int hash;
+
+    WeakIdentityKey(T referent, ReferenceQueue<Object> queue) {
+        super(referent, queue);
+        this.hash = System.identityHashCode(referent);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof WeakIdentityKey)) {
+            return false;
+        }
+        Object referent = get();
+        return referent != null && referent == ((WeakIdentityKey<?>) other).get();
+    }
+}
@@ -1,23 +1,58 @@
 package com.example.application.views.helloworld;
 
+import com.example.application.FleetPublishing;
+import com.example.application.FootprintSampling;
+import com.example.application.profiling.AllocationRecorder;
+import com.example.application.profiling.AsyncMeasurement;
+import com.example.application.profiling.AttributeSizeCalculator;
+import com.example.application.profiling.ClassMatcher;
+import com.example.application.profiling.FootprintHistory;
+import com.example.application.profiling.FootprintSampler;
+import com.example.application.profiling.FootprintSnapshot;
+import com.example.application.profiling.GcAwareScheduler;
+import com.example.application.profiling.LiveRegistry;
+import com.example.application.profiling.MeasurementProgress;
+import com.example.application.profiling.OrphanLeakDetector;
+import com.example.application.profiling.RetainedSizeCalculator;
+import com.example.application.profiling.SessionFootprintTracker;
+import com.example.application.profiling.SizeOfEngine;
 import com.example.application.profiling.SizeOfCalculator;
 import com.example.application.profiling.VaadinVisitor;
 import com.example.application.views.MainLayout;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Pre;
 import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.progressbar.ProgressBar;
+import com.vaadin.flow.component.orderedlayout.FlexComponent.Alignment;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.Scroller;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.router.RouteAlias;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.server.VaadinService;
 import com.vaadin.flow.server.VaadinSession;
 import com.vaadin.flow.spring.annotation.UIScope;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 import static com.example.application.profiling.ObjDescription.getDescription;
@@ -35,22 +70,120 @@ public class HelloWorldView extends VerticalLayout {
 
     //private final Grid test = new Grid(); // orphan!
 
-    public HelloWorldView() {
+    /**
+     * What the retained sizes measurement computes off the request thread, for the view to print.
+     */
+    private static final class RetainedSizesReport {
+        private final RetainedSizeCalculator.RetainedSizes retainedSizes;
+        private final List<AttributeSizeCalculator.AttributeTotal> topAttributes;
+
+        RetainedSizesReport(RetainedSizeCalculator.RetainedSizes retainedSizes, List<AttributeSizeCalculator.AttributeTotal> topAttributes) {
+            this.retainedSizes = retainedSizes;
+            this.topAttributes = topAttributes;
+        }
+    }
+
+    /**
+     * The deep sizes of the caller's UI and session, measured off the request thread.
+     */
+    private static final class CurrentSizes {
+        private final long uiDeepSize;
+        private final long sessionDeepSize;
+
+        CurrentSizes(long uiDeepSize, long sessionDeepSize) {
+            this.uiDeepSize = uiDeepSize;
+            this.sessionDeepSize = sessionDeepSize;
+        }
+    }
+
+    private final FootprintSampling footprintSampling;
+    private final FleetPublishing fleetPublishing;
+
+    public HelloWorldView(FootprintSampling footprintSampling, FleetPublishing fleetPublishing) {
+        this.footprintSampling = footprintSampling;
+        this.fleetPublishing = fleetPublishing;
+
         addClassName("hello-world-flow-view");
         Button wasteMemory = new Button("Waste memory");
 
         Button logMemDump = new Button("Print Memory Dump");
         logMemDump.setDisableOnClick(true);
         logMemDump.addClickListener(e -> {
-            System.gc();
+            UI ui = UI.getCurrent();
+            VaadinService service = VaadinService.getCurrent();
+            VaadinSession currentSession = VaadinSession.getCurrent();
+            // concurrent clicks, also from other users, join the running measurement
+            AsyncMeasurement.Measurement<SizeOfCalculator.DeepSize> measurement = AsyncMeasurement.get(service).start(measuring -> {
+                GcAwareScheduler.get(service).awaitCollection(measuring); // right after a natural GC, not a forced one
+                return measureService(service, measuring);
+            });
+            // the current UI and session differ per caller, so they are measured after the shared run, not in it
+            CompletableFuture<CurrentSizes> currentSizes = measurement.getResult().thenApplyAsync(deepSize -> new CurrentSizes(
+                    SizeOfCalculator.calculateSizesOf(ui).getDeepSize(), SizeOfCalculator.calculateSizesOf(currentSession).getDeepSize()), ForkJoinPool.commonPool());
 
+            HorizontalLayout progressLayout = createProgress(ui, measurement);
+            HelloWorldView.this.add(progressLayout);
+            currentSizes.whenComplete((sizes, failure) -> access(ui, () -> {
+                HelloWorldView.this.remove(progressLayout);
+                Throwable cause = (failure instanceof CompletionException ? failure.getCause() : failure);
+                if (cause instanceof CancellationException) {
+                    Notification.show("Measurement cancelled.");
+                }
+                else if (cause != null) {
+                    Notification.show("Measurement failed: " + cause);
+                }
+                else {
+                    SizeOfCalculator.DeepSize deepSize = measurement.getResult().join();
+                    MemoryReport report = new MemoryReport(deepSize);
+                    Pre pre = new Pre(getDebugMessage(service, deepSize, sizes, report));
+                    HelloWorldView.this.add(new Scroller(pre), createReportGrid(report), createSnapshotDownload(deepSize));
+                }
+                logMemDump.setEnabled(true);
+            }));
+        });
+
+        Button logFootprints = new Button("Print Session Footprints");
+        logFootprints.setDisableOnClick(true);
+        logFootprints.addClickListener(e -> {
             Pre pre = new Pre();
             HelloWorldView.this.add(new Scroller(pre));
 
-            String memProfile = getDebugMessage();
+            pre.setText(getFootprintMessage());
+            logFootprints.setEnabled(true);
+        });
 
-            pre.setText(memProfile);
-            logMemDump.setEnabled(true);
+        Button logRetainedSizes = new Button("Print Retained Sizes");
+        logRetainedSizes.setDisableOnClick(true);
+        logRetainedSizes.addClickListener(e -> {
+            UI ui = UI.getCurrent();
+            VaadinService service = VaadinService.getCurrent();
+            VaadinSession currentSession = VaadinSession.getCurrent();
+            // a graph of the whole node, or of every session in turn, is far too large to build on a request thread, holding the session lock
+            AsyncMeasurement.Measurement<RetainedSizesReport> measurement = AsyncMeasurement.get(service).start("retained sizes", measuring -> {
+                List<VaadinSession> sessions = SessionFootprintTracker.get(service).getSessions();
+                return new RetainedSizesReport(RetainedSizeCalculator.calculateRetainedSizesOf(service, sessions, measuring),
+                        AttributeSizeCalculator.calculateTopAttributesOf(sessions, 20, measuring));
+            });
+            // the current session differs per caller, so it is measured after the shared run, not in it
+            CompletableFuture<List<AttributeSizeCalculator.AttributeSize>> currentAttributes = measurement.getResult()
+                    .thenApplyAsync(report -> AttributeSizeCalculator.calculateAttributeSizesOf(currentSession, measurement.getProgress()), ForkJoinPool.commonPool());
+
+            HorizontalLayout progressLayout = createProgress(ui, measurement);
+            HelloWorldView.this.add(progressLayout);
+            currentAttributes.whenComplete((attributes, failure) -> access(ui, () -> {
+                HelloWorldView.this.remove(progressLayout);
+                Throwable cause = (failure instanceof CompletionException ? failure.getCause() : failure);
+                if (cause instanceof CancellationException) {
+                    Notification.show("Measurement cancelled.");
+                }
+                else if (cause != null) {
+                    Notification.show("Measurement failed: " + cause);
+                }
+                else {
+                    HelloWorldView.this.add(new Scroller(new Pre(getRetainedSizesMessage(service, measurement.getResult().join(), attributes))));
+                }
+                logRetainedSizes.setEnabled(true);
+            }));
         });
 
         Button closeSession = new Button("Close Session", e -> {
@@ -61,20 +194,225 @@ public class HelloWorldView extends VerticalLayout {
 
         wasteMemory.addClickListener(e -> {
             memoryWaste.add(new byte[64*1024*1024]);
+            SessionFootprintTracker.get(VaadinService.getCurrent()).markDirty(VaadinSession.getCurrent());
             Notification.show("I just wasted 64MB session size.");
         });
 
-        add(wasteMemory, logMemDump, closeSession);
+        add(wasteMemory, logMemDump, logFootprints, logRetainedSizes, closeSession);
     }
 
-    private String getDebugMessage() {
+    private String getFootprintMessage() {
         StringBuilder retVal = new StringBuilder();
 
-        VaadinService service = VaadinService.getCurrent();
-        SizeOfCalculator.DeepSize deepSize = SizeOfCalculator.calculateSizesOf(service, service.getClass().getName(), "com.example.application.view", "com.vaadin.flow.spring.SpringVaadinSession", "com.vaadin.flow.component.internal.JavaScriptBootstrapUI");
-        retVal.append("Memory footprint: deep size of ").append(getDescription(service)).append(" is ").append(deepSize.getDeepSize()).append(".\n\n");
+        LiveRegistry liveRegistry = LiveRegistry.get(VaadinService.getCurrent());
+        retVal.append("Live: ").append(liveRegistry.getNumberOfSessions()).append(" session(s), ").append(liveRegistry.getNumberOfUIs())
+                .append(" UI(s), ").append(liveRegistry.getNumberOfComponents()).append(" component(s) as of their last navigation.\n");
+
+        SessionFootprintTracker tracker = SessionFootprintTracker.get(VaadinService.getCurrent());
+        // only the sampler updates the tracker, a click must not crawl the dirty sessions
+        Optional<SessionFootprintTracker.FootprintReport> latestReport = footprintSampling.getSampler().flatMap(FootprintSampler::getLatestReport);
+        if (!latestReport.isPresent()) {
+            retVal.append("No footprint sample yet, see memory.sampler.*.\n");
+        }
+        List<SessionFootprintTracker.SessionFootprint> footprints = latestReport.map(SessionFootprintTracker.FootprintReport::getSessionFootprints)
+                .orElse(Collections.emptyList());
+        latestReport.ifPresent(report -> {
+            retVal.append("Re-measured ").append(report.getNumberOfRemeasuredSessions()).append(" of ").append(footprints.size())
+                    .append(" session(s) in ").append(report.getUpdateDurationNanos() / 1_000_000).append(" ms in the latest sample.\n");
+            retVal.append("Total deep size of all sessions is ").append(report.getTotalDeepSize()).append(".\n");
+        });
+        long now = System.currentTimeMillis();
+        footprintSampling.getServiceEstimate().ifPresent(serviceEstimate -> {
+            SizeOfCalculator.ApproximateDeepSize approximate = serviceEstimate.getApproximateDeepSize();
+            SizeOfCalculator.Estimate estimate = approximate.getDeepSize();
+            retVal.append("Deep size of the service estimated from ").append(approximate.getNumberOfSampledSessions()).append(" of ")
+                    .append(approximate.getNumberOfSessions()).append(" session(s) is ").append(Math.round(estimate.getValue()))
+                    .append(" (95% between ").append(Math.round(estimate.getLow())).append(" and ").append(Math.round(estimate.getHigh()))
+                    .append(", sampled ").append((now - serviceEstimate.getTimestampMillis()) / 1000).append(" s ago).\n");
+        });
+        retVal.append("\n");
+
+        List<OrphanLeakDetector.Suspect> suspects = tracker.getOrphanLeakDetector().getSuspects();
+        for (OrphanLeakDetector.Suspect suspect : suspects) {
+            retVal.append("SUSPECTED LEAK: orphaned ").append(suspect.getClassName()).append(" components grew ")
+                    .append(Arrays.toString(suspect.getOrphanCounts())).append(".\n");
+            if (!suspect.getReferencePath().isEmpty()) {
+                retVal.append("  Held by ").append(String.join(" -> ", suspect.getReferencePath())).append(".\n");
+            }
+        }
+        if (!suspects.isEmpty()) {
+            retVal.append("\n");
+        }
+
+        Map<String, AllocationRecorder.Allocation> allocations = AllocationRecorder.get(VaadinService.getCurrent()).getAllocations();
+        for (SessionFootprintTracker.SessionFootprint footprint : footprints) {
+            retVal.append(footprint.getSessionDescription()).append(": ").append(footprint.getDeepSize()).append(" bytes, ")
+                    .append(footprint.getNumberOfUIs()).append(" UIs, ").append(footprint.getNumberOfComponents()).append(" components")
+                    .append(" (measured ").append((now - footprint.getMeasuredAtMillis()) / 1000).append(" s ago)");
+            AllocationRecorder.Allocation allocation = allocations.get(footprint.getSessionDescription());
+            if (allocation != null) {
+                retVal.append(", allocating ").append(Math.round(allocation.getBytesPerSecond())).append(" bytes/s");
+            }
+            retVal.append(".\n");
+        }
+
+        footprintSampling.getSampler().ifPresent(sampler -> {
+            FootprintHistory history = sampler.getHistory();
+            retVal.append("\nSampler: ").append(history.getSamples().size()).append(" sample(s) in history");
+            history.getLatest().ifPresent(latest -> retVal.append(", latest ").append((now - latest.getTimestampMillis()) / 1000)
+                    .append(" s ago took ").append(latest.getCpuNanos() / 1_000_000).append(" ms CPU"));
+            retVal.append(".\n");
+            history.getGrowthPerMinute(FootprintHistory.Sample::getSessionBytes).entrySet().stream().limit(10).forEachOrdered(growth ->
+                    retVal.append("  ").append(growth.getKey()).append(" grows by ").append(Math.round(growth.getValue())).append(" bytes/min.\n"));
+            history.getGrowthPerMinute(FootprintHistory.Sample::getClassBytes).entrySet().stream().limit(10).forEachOrdered(growth ->
+                    retVal.append("  Class ").append(growth.getKey()).append(" grows by ").append(Math.round(growth.getValue())).append(" bytes/min.\n"));
+        });
+
+        try {
+            fleetPublishing.getFleet().ifPresent(fleet -> {
+                retVal.append("\nFleet (this is ").append(fleetPublishing.getNodeId()).append("):\n");
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                fleet.print(new PrintStream(out, true));
+                retVal.append(new String(out.toByteArray()));
+            });
+        } catch (IOException e) {
+            retVal.append("\nFleet view unavailable: ").append(e).append(".\n");
+        }
+
+        return retVal.toString();
+    }
+
+    private String getRetainedSizesMessage(VaadinService service, RetainedSizesReport report, List<AttributeSizeCalculator.AttributeSize> currentAttributes) {
+        StringBuilder retVal = new StringBuilder();
+        RetainedSizeCalculator.RetainedSizes retainedSizes = report.retainedSizes;
+
+        retVal.append("Retained size of ").append(getDescription(service)).append(" and its sessions is ").append(retainedSizes.getTotalSize())
+                .append(" (").append(retainedSizes.getNumberOfObjects()).append(" objects).\n\n");
+
+        List<RetainedSizeCalculator.RetainedSize> sessions = retainedSizes.getRetainedSizes(RetainedSizeCalculator.Kind.SESSION);
+        if (!sessions.isEmpty()) {
+            long sessionTotal = 0;
+            for (RetainedSizeCalculator.RetainedSize session : sessions) {
+                sessionTotal += session.getRetainedSize();
+            }
+            long average = sessionTotal / sessions.size();
+            retVal.append("Average retained size of ").append(sessions.size()).append(" session(s) is ").append(average).append(".\n");
+            if (average > 0) {
+                long maxMemory = Runtime.getRuntime().maxMemory();
+                retVal.append("At that size, about ").append((maxMemory - (retainedSizes.getTotalSize() - sessionTotal)) / average)
+                        .append(" concurrent sessions fit into a max heap of ").append(maxMemory).append(".\n");
+            }
+            retVal.append("\n");
+        }
+
+        for (RetainedSizeCalculator.Kind kind : RetainedSizeCalculator.Kind.values()) {
+            retVal.append(kind).append(":\n");
+            for (RetainedSizeCalculator.RetainedSize retainedSize : retainedSizes.getRetainedSizes(kind)) {
+                retVal.append("  ").append(retainedSize.getDescription()).append(" retains ").append(retainedSize.getRetainedSize()).append(".\n");
+            }
+        }
+
+        retVal.append("\nTop session attributes by total bytes:\n");
+        for (AttributeSizeCalculator.AttributeTotal total : report.topAttributes) {
+            retVal.append("  ").append(total.getKey()).append(" in ").append(total.getNumberOfSessions()).append(" session(s) retains ")
+                    .append(total.getTotalRetainedSize()).append(", deep size ").append(total.getTotalDeepSize()).append(".\n");
+        }
+
+        retVal.append("\nAttributes of the current session:\n");
+        for (AttributeSizeCalculator.AttributeSize attribute : currentAttributes) {
+            retVal.append("  ").append(attribute.getKey()).append(" (").append(attribute.getValueClassName()).append(") retains ")
+                    .append(attribute.getRetainedSize()).append(", deep size ").append(attribute.getDeepSize()).append(".\n");
+        }
+
+        return retVal.toString();
+    }
+
+    private static SizeOfCalculator.DeepSize measureService(VaadinService service, MeasurementProgress progress) {
+        List<VaadinSession> sessions = SessionFootprintTracker.get(service).getSessions();
+        return SizeOfCalculator.calculateSizesInParallel(service, sessions, ForkJoinPool.commonPool(), SizeOfCalculator.StatisticsMode.AGGREGATE,
+                ClassMatcher.ofPrefixes(service.getClass().getName(), "com.example.application.view", "com.vaadin.flow.spring.SpringVaadinSession", "com.vaadin.flow.component.internal.JavaScriptBootstrapUI"),
+                progress);
+    }
+
+    /**
+     * @return a link downloading the measurement as a FootprintSnapshot, with the session sizes of the latest sample if there is one.
+     */
+    private Anchor createSnapshotDownload(SizeOfCalculator.DeepSize deepSize) {
+        Map<String, Long> sessionBytes = footprintSampling.getSampler()
+                .flatMap(sampler -> sampler.getHistory().getLatest())
+                .map(FootprintHistory.Sample::getSessionBytes)
+                .orElse(Collections.emptyMap());
+        StreamResource snapshot = new StreamResource("footprint-" + System.currentTimeMillis() + ".vms",
+                (stream, session) -> FootprintSnapshot.write(deepSize, sessionBytes, stream));
+        Anchor download = new Anchor(snapshot, "Download snapshot");
+        download.getElement().setAttribute("download", true);
+        return download;
+    }
+
+    /**
+     * @return a progress bar with a Cancel button, following the measurement until it completes.
+     */
+    private static HorizontalLayout createProgress(UI ui, AsyncMeasurement.Measurement<?> measurement) {
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setIndeterminate(true);
+        HorizontalLayout progressLayout = new HorizontalLayout(progressBar, new Button("Cancel", c -> measurement.cancel()));
+        progressLayout.setAlignItems(Alignment.CENTER);
+        progressLayout.setWidthFull();
+        progressLayout.setFlexGrow(1, progressBar);
+
+        MeasurementProgress progress = measurement.getProgress();
+        progress.addProgressListener(() -> access(ui, () -> {
+            if (progress.getTotal() > 0) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue((double) progress.getCompleted() / progress.getTotal());
+            }
+        }));
+        return progressLayout;
+    }
+
+    /**
+     * Runs the command with the UI locked, pushed to the browser; does nothing if the UI is gone by now.
+     */
+    private static void access(UI ui, Command command) {
+        try {
+            ui.access(command);
+        } catch (UIDetachedException e) {
+            // nobody left to show it to
+        }
+    }
+
+    /**
+     * @return a Grid showing the rows of the report, fetched lazily as they are scrolled into view.
+     */
+    private Grid<MemoryReport.Row> createReportGrid(MemoryReport report) {
+        Grid<MemoryReport.Row> grid = new Grid<>();
+        grid.addColumn(MemoryReport.Row::getSection).setHeader("Section").setAutoWidth(true).setFlexGrow(0);
+        grid.addColumn(MemoryReport.Row::getName).setHeader("Name").setFlexGrow(1);
+        grid.addColumn(MemoryReport.Row::getCount).setHeader("Count").setAutoWidth(true).setFlexGrow(0);
+        grid.addColumn(row -> (row.getBytes() < 0 ? "" : String.valueOf(row.getBytes()))).setHeader("Bytes").setAutoWidth(true).setFlexGrow(0);
+        grid.setItems(report.toDataProvider());
+        grid.setHeight("400px");
+        return grid;
+    }
+
+    private String getDebugMessage(VaadinService service, SizeOfCalculator.DeepSize deepSize, CurrentSizes currentSizes, MemoryReport report) {
+        StringBuilder retVal = new StringBuilder();
+
+        retVal.append("Memory footprint: deep size of ").append(getDescription(service)).append(" is ").append(deepSize.getDeepSize()).append(".\n");
+        retVal.append("Measured with the ").append(SizeOfEngine.getActive()).append(" SizeOf engine.\n");
+        GcAwareScheduler gcAwareScheduler = GcAwareScheduler.get(service);
+        long heapUsedAfterCollection = gcAwareScheduler.getHeapUsedAfterLastCollection();
+        if (heapUsedAfterCollection > 0) {
+            retVal.append("The heap held ").append(heapUsedAfterCollection).append(" bytes after its last collection");
+            gcAwareScheduler.getLastCollection().ifPresent(gc -> retVal.append(" (").append(gc.getGcName()).append(", ")
+                    .append((System.currentTimeMillis() - gc.getEndMillis()) / 1000).append(" s ago)"));
+            retVal.append("; the deep size is ").append(deepSize.getDeepSize() * 100 / heapUsedAfterCollection).append("% of it.\n");
+        }
+        retVal.append("\n");
 
         retVal.append("Vaadin:\n");
+        retVal.append("Current UI has a deep size of ").append(currentSizes.uiDeepSize).append(".\n");
+        retVal.append("Current VaadinSession has a deep size of ").append(currentSizes.sessionDeepSize).append(".\n");
         VaadinVisitor.VaadinStatistics vaadinStatistics = deepSize.getVaadinStatistics();
         int numCurrentComponents = vaadinStatistics.getComponentsOfCurrentUI().size();
         retVal.append("Current UI has ").append(numCurrentComponents).append(" Vaadin components.\n");
@@ -85,31 +423,8 @@ public class HelloWorldView extends VerticalLayout {
         vaadinStatistics.getAttributesOfCurrentSession().stream().sorted().forEachOrdered(attrib -> retVal.append("  ").append(attrib).append("\n"));
 
         retVal.append("\n");
-        int numOrphanedComponents = vaadinStatistics.getOrphanedComponents().size();
-        if (numOrphanedComponents == 0){
-            retVal.append("No orphaned components (not attached to any UI) found.\n\n");
-        }
-        else{
-            retVal.append("WARNING: ").append(numOrphanedComponents).append(" ORPHANED COMPONENT(S) (not attached to any UI) FOUND!\n\n");
-        }
-
-        Set<String> sessions = vaadinStatistics.getSession2UIsMap().keySet();
-        for (String session : sessions){
-            retVal.append(session).append(" (").append(vaadinStatistics.getSession2AttribKeysMap().get(session).size()).append(" attributes").append(")").append(":\n");
-            Set<String> uis = vaadinStatistics.getSession2UIsMap().get(session);
-            for (String ui : uis){
-                retVal.append("  ").append(ui).append(": ").append(vaadinStatistics.getUI2ComponentsMap().get(ui).size()).append(" components.\n");
-            }
-        }
-        retVal.append("\n\n");
-
-        retVal.append("Other things of interest:\n");
-        SizeOfCalculator.ClassStatistics[] totals = deepSize.getClassStatistics();
-        for (SizeOfCalculator.ClassStatistics total : totals) {
-            retVal.append("Class ").append(total.getClassName()).append(" x").append(total.getInstanceStatistics().length).append(" instances.\n");
-            //for (SizeOfCalculator.InstanceStatistics ois : total.getInstanceStatistics()){
-            //    retVal.append("---Instance ").append(ois.getDescription()).append("\n");
-            //}
+        for (String line : report.getSummary()) {
+            retVal.append(line).append("\n");
         }
 
         return retVal.toString();
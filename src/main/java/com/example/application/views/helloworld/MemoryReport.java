@@ -0,0 +1,147 @@
+package com.example.application.views.helloworld;
+
+import com.example.application.profiling.ClassHistogram;
+import com.example.application.profiling.SizeOfCalculator;
+import com.example.application.profiling.VaadinVisitor;
+import com.vaadin.flow.data.provider.CallbackDataProvider;
+import com.vaadin.flow.data.provider.DataProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The rows of a memory dump as a lazy DataProvider over a DeepSize: a row is only rendered when the Grid asks for
+ * it, so neither the server nor the client ever holds the whole report.
+ * The rows are the sessions with their UIs, the UIs without session, the orphaned components and the classes, largest
+ * instance count first.
+ */
+class MemoryReport {
+
+    public static class Row {
+        private final String section;
+        private final String name;
+        private final long count;
+        private final long bytes;
+
+        Row(String section, String name, long count, long bytes) {
+            this.section = section;
+            this.name = name;
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        public String getSection() {
+            return section;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes; // -1 if not measured
+        }
+    }
+
+    private final VaadinVisitor.VaadinStatistics vaadinStatistics;
+    private final ClassHistogram classHistogram;
+    private final Class<?>[] classes;
+    private final int[] sessionRows; // first row of each session, followed by the rows of its UIs
+    private final int numSessionRows;
+    private final int numSessionlessUIRows;
+    private final int numOrphanRows;
+
+    MemoryReport(SizeOfCalculator.DeepSize deepSize) {
+        this.vaadinStatistics = deepSize.getVaadinStatistics();
+        this.classHistogram = deepSize.getClassHistogram();
+        this.classes = classHistogram.getTopClasses(classHistogram.getNumberOfClasses());
+
+        int numSessions = vaadinStatistics.getNumberOfKnownSessions();
+        this.sessionRows = new int[numSessions];
+        int row = 0;
+        for (int session = 0; session < numSessions; session++) {
+            sessionRows[session] = row;
+            row += 1 + vaadinStatistics.getNumberOfUIs(session);
+        }
+        this.numSessionRows = row;
+        this.numSessionlessUIRows = vaadinStatistics.getNumberOfUIs() - vaadinStatistics.getFirstUIWithoutSession();
+        this.numOrphanRows = vaadinStatistics.getNumberOfOrphanedComponents();
+    }
+
+    int size() {
+        return numSessionRows + numSessionlessUIRows + numOrphanRows + classes.length;
+    }
+
+    CallbackDataProvider<Row, Void> toDataProvider() {
+        return DataProvider.fromCallbacks(
+                query -> fetch(query.getOffset(), query.getLimit()),
+                query -> size());
+    }
+
+    Stream<Row> fetch(int offset, int limit) {
+        int end = (int) Math.min(size(), (long) offset + limit);
+        return IntStream.range(offset, end).mapToObj(this::getRow);
+    }
+
+    private Row getRow(int row) {
+        if (row < numSessionRows) {
+            int session = findSession(row);
+            int sessionRow = sessionRows[session];
+            if (row == sessionRow) {
+                return new Row("Session", vaadinStatistics.getSessionDescription(session),
+                        vaadinStatistics.getNumberOfUIs(session), -1);
+            }
+            int ui = vaadinStatistics.getFirstUI(session) + (row - sessionRow - 1);
+            return new Row("UI", vaadinStatistics.getUIDescription(ui), vaadinStatistics.getNumberOfComponents(ui), -1);
+        }
+        row -= numSessionRows;
+        if (row < numSessionlessUIRows) {
+            int ui = vaadinStatistics.getFirstUIWithoutSession() + row;
+            return new Row("UI without session", vaadinStatistics.getUIDescription(ui), vaadinStatistics.getNumberOfComponents(ui), -1);
+        }
+        row -= numSessionlessUIRows;
+        if (row < numOrphanRows) {
+            return new Row("Orphaned component", vaadinStatistics.getComponentDescription(vaadinStatistics.getFirstOrphanedComponent() + row), 1, -1);
+        }
+        row -= numOrphanRows;
+        Class<?> clazz = classes[row];
+        return new Row("Class", clazz.getName(), classHistogram.getCount(clazz), classHistogram.getBytes(clazz));
+    }
+
+    private int findSession(int row) {
+        int low = 0;
+        int high = sessionRows.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (sessionRows[mid] <= row) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the lines that are always shown above the rows.
+     */
+    List<String> getSummary() {
+        List<String> retVal = new ArrayList<>();
+        retVal.add(vaadinStatistics.getNumberOfVaadinSessions() + " session(s), " + vaadinStatistics.getNumberOfUIs() + " UI(s), "
+                + vaadinStatistics.getNumberOfComponents() + " component(s), " + classes.length + " class(es).");
+        if (numOrphanRows == 0) {
+            retVal.add("No orphaned components (not attached to any UI) found.");
+        }
+        else {
+            retVal.add("WARNING: " + numOrphanRows + " ORPHANED COMPONENT(S) (not attached to any UI) FOUND!");
+        }
+        return retVal;
+    }
+}
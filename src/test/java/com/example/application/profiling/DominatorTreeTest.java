@@ -0,0 +1,63 @@
+package com.example.application.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DominatorTreeTest {
+
+    private static final long[] SIZES = {1, 2, 4, 8, 16};
+
+    @Test
+    void diamondIsDominatedByTheRoot() {
+        // 0 -> 1 -> 3, 0 -> 2 -> 3
+        DominatorTree tree = tree(new int[][]{{1, 2}, {3}, {3}, {}});
+        assertEquals(-1, tree.getImmediateDominator(0));
+        assertEquals(0, tree.getImmediateDominator(1));
+        assertEquals(0, tree.getImmediateDominator(2));
+        assertEquals(0, tree.getImmediateDominator(3));
+        assertEquals(15, tree.getRetainedSize(0));
+        assertEquals(2, tree.getRetainedSize(1));
+        assertEquals(4, tree.getRetainedSize(2));
+        assertEquals(8, tree.getRetainedSize(3));
+    }
+
+    @Test
+    void cycleIsRetainedByItsEntry() {
+        // 0 -> 1 -> 2 -> 1, 2 -> 3
+        DominatorTree tree = tree(new int[][]{{1}, {2}, {1, 3}, {}});
+        assertEquals(0, tree.getImmediateDominator(1));
+        assertEquals(1, tree.getImmediateDominator(2));
+        assertEquals(2, tree.getImmediateDominator(3));
+        assertEquals(14, tree.getRetainedSize(1));
+        assertEquals(12, tree.getRetainedSize(2));
+    }
+
+    @Test
+    void shortcutSkipsTheDepthFirstParent() {
+        // 0 -> 1 -> 2 -> 3 -> 4, 1 -> 4, 0 -> 3: the semi-dominator of 4 is not its immediate dominator
+        DominatorTree tree = tree(new int[][]{{1, 3}, {2, 4}, {3}, {4}, {}});
+        assertEquals(0, tree.getImmediateDominator(1));
+        assertEquals(1, tree.getImmediateDominator(2));
+        assertEquals(0, tree.getImmediateDominator(3));
+        assertEquals(0, tree.getImmediateDominator(4));
+        assertEquals(6, tree.getRetainedSize(1));
+        assertEquals(31, tree.getRetainedSize(0));
+    }
+
+    @Test
+    void unreachableNodesRetainNothing() {
+        // 0 -> 1, 2 -> 1, 2 -> 3; 2 and 3 are not reachable from the root
+        DominatorTree tree = tree(new int[][]{{1}, {}, {1, 3}, {}});
+        assertEquals(0, tree.getImmediateDominator(1));
+        assertEquals(-1, tree.getImmediateDominator(2));
+        assertEquals(-1, tree.getImmediateDominator(3));
+        assertEquals(3, tree.getRetainedSize(0));
+        assertEquals(0, tree.getRetainedSize(2));
+        assertEquals(0, tree.getRetainedSize(3));
+    }
+
+    private static DominatorTree tree(int[][] successors) {
+        return new DominatorTree(ObjectGraph.of(SIZES, successors));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.application.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FootprintSnapshotTest {
+
+    private static final String JVM = "1@host started 1";
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        try (FootprintSnapshot.Reader reader = reader(before(JVM))) {
+            assertEquals(JVM, reader.getJvmId());
+            assertEquals(42, reader.getTimestampMillis());
+            assertEquals(3000, reader.getDeepSize());
+            assertEquals(2, reader.getNumberOfClasses());
+            assertEquals(2, reader.getNumberOfSessions());
+
+            FootprintSnapshot.ClassRecord a = reader.nextClass();
+            assertEquals("a.A", a.getName());
+            assertEquals(10, a.getCount());
+            assertEquals(100, a.getBytes());
+            assertEquals("b.B", reader.nextClass().getName());
+            assertNull(reader.nextClass());
+
+            FootprintSnapshot.SessionRecord session = reader.nextSession();
+            assertEquals("S@1", session.getDescription());
+            assertEquals(1000, session.getBytes());
+            assertEquals(1, session.getNumberOfUIs());
+            assertEquals(10, session.getNumberOfComponents());
+            assertEquals(3, session.getNumberOfAttributes());
+            assertEquals("S@2", reader.nextSession().getDescription());
+            assertNull(reader.nextSession());
+        }
+    }
+
+    @Test
+    void nextSessionSkipsUnreadClasses() throws IOException {
+        try (FootprintSnapshot.Reader reader = reader(before(JVM))) {
+            assertEquals("S@1", reader.nextSession().getDescription());
+            assertNull(reader.nextClass());
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        assertThrows(IOException.class, () -> reader(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    void diffMatchesSessionsOfTheSameJvm() throws IOException {
+        SnapshotDiff diff = diff(before(JVM), after(JVM));
+
+        assertTrue(diff.isSameJvm());
+        assertEquals(3000, diff.getDeepSizeBefore());
+        assertEquals(2900, diff.getDeepSizeAfter());
+        assertEquals(1, diff.getNumberOfNewSessions());
+        assertEquals(1, diff.getNumberOfGoneSessions());
+
+        List<SnapshotDiff.Growth> sessions = diff.getSessionGrowths();
+        assertEquals(1, sessions.size());
+        assertEquals("S@2", sessions.get(0).getKey());
+        assertEquals(500, sessions.get(0).getDelta());
+        assertEquals(5, sessions.get(0).getCountDelta());
+
+        assertClassGrowths(diff);
+    }
+
+    @Test
+    void diffDoesNotMatchSessionsOfDifferentJvms() throws IOException {
+        SnapshotDiff diff = diff(before(JVM), after("2@host started 2"));
+
+        assertFalse(diff.isSameJvm());
+        assertEquals(2, diff.getNumberOfNewSessions());
+        assertEquals(2, diff.getNumberOfGoneSessions());
+        assertTrue(diff.getSessionGrowths().isEmpty());
+
+        assertClassGrowths(diff); // classes are comparable across JVMs
+    }
+
+    private static void assertClassGrowths(SnapshotDiff diff) {
+        List<SnapshotDiff.Growth> classes = diff.getClassGrowths();
+        assertEquals(3, classes.size());
+        assertEquals("a.A", classes.get(0).getKey());
+        assertEquals(40, classes.get(0).getDelta());
+        assertEquals(2, classes.get(0).getCountDelta());
+        assertEquals("c.C", classes.get(1).getKey());
+        assertEquals(8, classes.get(1).getDelta());
+        assertEquals("b.B", classes.get(2).getKey());
+        assertEquals(-50, classes.get(2).getDelta());
+        assertEquals(-5, classes.get(2).getCountDelta());
+    }
+
+    private static byte[] before(String jvmId) throws IOException {
+        return write(jvmId, 3000,
+                Arrays.asList(new FootprintSnapshot.ClassRecord("a.A", 10, 100), new FootprintSnapshot.ClassRecord("b.B", 5, 50)),
+                Arrays.asList(new FootprintSnapshot.SessionRecord("S@1", 1000, 1, 10, 3), new FootprintSnapshot.SessionRecord("S@2", 2000, 2, 20, 4)));
+    }
+
+    private static byte[] after(String jvmId) throws IOException {
+        return write(jvmId, 2900,
+                Arrays.asList(new FootprintSnapshot.ClassRecord("a.A", 12, 140), new FootprintSnapshot.ClassRecord("c.C", 1, 8)),
+                Arrays.asList(new FootprintSnapshot.SessionRecord("S@2", 2500, 2, 25, 4), new FootprintSnapshot.SessionRecord("S@3", 400, 1, 5, 1)));
+    }
+
+    private static byte[] write(String jvmId, long deepSize, List<FootprintSnapshot.ClassRecord> classes,
+                                List<FootprintSnapshot.SessionRecord> sessions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FootprintSnapshot.write(jvmId, 42, deepSize, classes, sessions, out);
+        return out.toByteArray();
+    }
+
+    private static FootprintSnapshot.Reader reader(byte[] snapshot) throws IOException {
+        return new FootprintSnapshot.Reader(new ByteArrayInputStream(snapshot));
+    }
+
+    private static SnapshotDiff diff(byte[] before, byte[] after) throws IOException {
+        try (FootprintSnapshot.Reader beforeReader = reader(before); FootprintSnapshot.Reader afterReader = reader(after)) {
+            return SnapshotDiff.compare(beforeReader, afterReader, 10);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.application.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectGraphTest {
+
+    private static final long[] SIZES = {1, 1, 1, 1, 1, 1};
+
+    @Test
+    void pathToTheRootIsTheRoot() {
+        ObjectGraph graph = ObjectGraph.of(SIZES, new int[][]{{1}, {0}});
+        assertArrayEquals(new int[]{0}, graph.pathTo(0));
+    }
+
+    @Test
+    void pathToIsShortest() {
+        // 0 -> 1 -> 2 -> 3 -> 4, 0 -> 5 -> 4
+        ObjectGraph graph = ObjectGraph.of(SIZES, new int[][]{{1, 5}, {2}, {3}, {4}, {}, {4}});
+        assertArrayEquals(new int[]{0, 5, 4}, graph.pathTo(4));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, graph.pathTo(3));
+    }
+
+    @Test
+    void pathToFollowsCycles() {
+        // 0 -> 1 -> 2 -> 0, 2 -> 3
+        ObjectGraph graph = ObjectGraph.of(SIZES, new int[][]{{1}, {2}, {0, 3}, {}});
+        assertArrayEquals(new int[]{0, 1, 2, 3}, graph.pathTo(3));
+    }
+
+    @Test
+    void pathToUnreachableNodeIsEmpty() {
+        // 0 -> 1, 2 -> 1
+        ObjectGraph graph = ObjectGraph.of(SIZES, new int[][]{{1}, {}, {1}});
+        assertEquals(0, graph.pathTo(2).length);
+    }
+}
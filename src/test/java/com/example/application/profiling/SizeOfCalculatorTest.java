@@ -0,0 +1,51 @@
+package com.example.application.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeOfCalculatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void extrapolatesWithFinitePopulationCorrection() {
+        // mean 2.5, variance 5/3, standard error 10 * sqrt(5/3 / 4 * (1 - 4/10)) = 5
+        SizeOfCalculator.Estimate estimate = accumulator(1, 2, 3, 4).extrapolate(5, 4, 10);
+        assertEquals(30, estimate.getValue(), DELTA);
+        assertEquals(30 - 1.96 * 5, estimate.getLow(), DELTA);
+        assertEquals(30 + 1.96 * 5, estimate.getHigh(), DELTA);
+    }
+
+    @Test
+    void isExactOnceEverySessionIsSampled() {
+        SizeOfCalculator.Estimate estimate = accumulator(1, 2, 3).extrapolate(0, 3, 3);
+        assertEquals(6, estimate.getValue(), DELTA);
+        assertEquals(6, estimate.getLow(), DELTA);
+        assertEquals(6, estimate.getHigh(), DELTA);
+    }
+
+    @Test
+    void isExactWithoutSamples() {
+        SizeOfCalculator.Estimate estimate = accumulator().extrapolate(7, 0, 10);
+        assertEquals(7, estimate.getValue(), DELTA);
+        assertEquals(7, estimate.getLow(), DELTA);
+        assertEquals(7, estimate.getHigh(), DELTA);
+    }
+
+    @Test
+    void lowerBoundIsNotNegative() {
+        SizeOfCalculator.Estimate estimate = accumulator(0, 0, 0, 100).extrapolate(0, 4, 100);
+        assertEquals(2500, estimate.getValue(), DELTA);
+        assertEquals(0, estimate.getLow(), DELTA);
+        assertTrue(estimate.getHigh() > 2500);
+    }
+
+    private static SizeOfCalculator.Accumulator accumulator(double... values) {
+        SizeOfCalculator.Accumulator retVal = new SizeOfCalculator.Accumulator();
+        for (double value : values) {
+            retVal.add(value);
+        }
+        return retVal;
+    }
+}
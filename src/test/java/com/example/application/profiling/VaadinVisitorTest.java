@@ -0,0 +1,39 @@
+package com.example.application.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VaadinVisitorTest {
+
+    @Test
+    void sortByOwnerGroupsByOwnerAndKeepsOrderWithinGroups() {
+        int[] first = new int[2 + 2];
+        int[] order = VaadinVisitor.sortByOwner(owners(1, -1, 0, 1, 0), 2, first);
+        assertArrayEquals(new int[]{2, 4, 0, 3, 1}, order);
+        assertArrayEquals(new int[]{0, 2, 4, 5}, first); // owner 0, owner 1, unowned, end
+    }
+
+    @Test
+    void sortByOwnerLeavesEmptyRangesForOwnersWithoutElements() {
+        int[] first = new int[3 + 2];
+        int[] order = VaadinVisitor.sortByOwner(owners(2, 2), 3, first);
+        assertArrayEquals(new int[]{0, 1}, order);
+        assertArrayEquals(new int[]{0, 0, 0, 2, 2}, first);
+    }
+
+    @Test
+    void sortByOwnerOfNothing() {
+        int[] first = new int[1 + 2];
+        assertEquals(0, VaadinVisitor.sortByOwner(owners(), 1, first).length);
+        assertArrayEquals(new int[]{0, 0, 0}, first);
+    }
+
+    private static VaadinVisitor.Ints owners(int... owners) {
+        VaadinVisitor.Ints retVal = new VaadinVisitor.Ints();
+        for (int owner : owners) {
+            retVal.add(owner);
+        }
+        return retVal;
+    }
+}